@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.agent;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.instrument.Instrumentation;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+/**
+ * A java agent that enforces the LessIO rules without a {@link SecurityManager}. It instruments the JDK
+ * methods that open or delete files and open sockets and processes and checks each of these operations
+ * with a {@link org.kitei.testing.lessio.LessIOEngine}. Code that does no IO runs unchanged.
+ *
+ * Use with <code>-javaagent:kitei-lessio-agent.jar</code>.
+ */
+public final class LessIOAgent
+{
+    // Called from the instrumented JDK classes, so these must be loaded by the bootstrap class loader.
+    private static final String[] BRIDGE_CLASSES = {
+        "org/kitei/testing/lessio/agent/bridge/LessIOBridge.class",
+        "org/kitei/testing/lessio/agent/bridge/LessIOBridge$CallDepth.class",
+        "org/kitei/testing/lessio/agent/bridge/LessIOBridgeHook.class"
+    };
+
+    private static boolean installed = false;
+
+    private LessIOAgent()
+    {
+        throw new AssertionError("do not instantiate");
+    }
+
+    public static void premain(final String args, final Instrumentation instrumentation) throws Exception
+    {
+        install(instrumentation);
+    }
+
+    public static void agentmain(final String args, final Instrumentation instrumentation) throws Exception
+    {
+        install(instrumentation);
+    }
+
+    private static synchronized void install(final Instrumentation instrumentation) throws Exception
+    {
+        if (installed) {
+            return;
+        }
+        installed = true;
+
+        instrumentation.appendToBootstrapClassLoaderSearch(createBridgeJar());
+
+        // This class must not refer to the bridge classes, otherwise they could be loaded from the
+        // agent jar before they are available to the bootstrap class loader.
+        LessIOAgentInstaller.install(instrumentation);
+    }
+
+    private static JarFile createBridgeJar() throws IOException
+    {
+        final Path bridgeJar = Files.createTempFile("kitei-lessio-bridge", ".jar");
+        bridgeJar.toFile().deleteOnExit();
+
+        try (OutputStream out = Files.newOutputStream(bridgeJar);
+             JarOutputStream jar = new JarOutputStream(out)) {
+            for (final String bridgeClass : BRIDGE_CLASSES) {
+                try (InputStream in = LessIOAgent.class.getClassLoader().getResourceAsStream(bridgeClass)) {
+                    if (in == null) {
+                        throw new IllegalStateException(format("%s is missing from the agent jar", bridgeClass));
+                    }
+                    jar.putNextEntry(new JarEntry(bridgeClass));
+                    in.transferTo(jar);
+                    jar.closeEntry();
+                }
+            }
+        }
+
+        return new JarFile(bridgeJar.toFile());
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.agent;
+
+import java.io.FileDescriptor;
+
+import org.kitei.testing.lessio.LessIOEngine;
+import org.kitei.testing.lessio.LessIOStackSource;
+import org.kitei.testing.lessio.agent.bridge.LessIOBridgeHook;
+
+/**
+ * Checks the operations reported by the instrumented JDK classes against the stack of the calling thread.
+ */
+final class LessIOAgentHook implements LessIOBridgeHook
+{
+    private final LessIOEngine engine;
+    private final LessIOStackSource stack = LessIOStackSource.currentThread();
+
+    LessIOAgentHook(final LessIOEngine engine)
+    {
+        this.engine = engine;
+    }
+
+    @Override
+    public void checkRead(final String fileName)
+    {
+        engine.checkRead(fileName, stack);
+    }
+
+    @Override
+    public void checkRead(final FileDescriptor fd)
+    {
+        engine.checkRead(fd, stack);
+    }
+
+    @Override
+    public void checkWrite(final String fileName)
+    {
+        engine.checkWrite(fileName, stack);
+    }
+
+    @Override
+    public void checkWrite(final FileDescriptor fd)
+    {
+        engine.checkWrite(fd, stack);
+    }
+
+    @Override
+    public void checkDelete(final String fileName)
+    {
+        engine.checkDelete(fileName, stack);
+    }
+
+    @Override
+    public void checkConnect(final String host, final int port)
+    {
+        engine.checkConnect(host, port, stack);
+    }
+
+    @Override
+    public void checkListen(final int port)
+    {
+        engine.checkListen(port, stack);
+    }
+
+    @Override
+    public void checkExec(final String cmd)
+    {
+        engine.checkExec(cmd, stack);
+    }
+
+    @Override
+    public void refreshClasspath()
+    {
+        engine.refreshClasspath();
+    }
+}
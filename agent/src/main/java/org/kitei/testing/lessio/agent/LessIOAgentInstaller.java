@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.agent;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.kitei.testing.lessio.LessIOEngine;
+import org.kitei.testing.lessio.agent.bridge.LessIOBridge;
+
+/**
+ * Only loaded once the bridge classes are available to the bootstrap class loader.
+ */
+final class LessIOAgentInstaller
+{
+    private LessIOAgentInstaller()
+    {
+        throw new AssertionError("do not instantiate");
+    }
+
+    static void install(final Instrumentation instrumentation) throws UnmodifiableClassException
+    {
+        // The instrumented classes in java.base call into the unnamed module of the bootstrap class loader.
+        instrumentation.redefineModule(Object.class.getModule(),
+            Collections.singleton(LessIOBridge.class.getModule()),
+            Collections.emptyMap(),
+            Collections.emptyMap(),
+            Collections.emptySet(),
+            Collections.emptyMap());
+
+        // The engine loads everything the checks need when it is created, so it must exist
+        // before the first operation is checked.
+        final LessIOEngine engine = LessIOEngine.create();
+        engine.registerStatistics("LessIOAgent");
+        LessIOBridge.install(new LessIOAgentHook(engine));
+
+        instrumentation.addTransformer(new LessIOAgentTransformer(), true);
+
+        // Most IO classes are loaded long before the agent starts.
+        final List<Class<?>> loadedTargets = new ArrayList<>();
+        for (final Class<?> clazz : instrumentation.getAllLoadedClasses()) {
+            if (LessIOAgentTransformer.isTarget(clazz) && instrumentation.isModifiableClass(clazz)) {
+                loadedTargets.add(clazz);
+            }
+        }
+        if (!loadedTargets.isEmpty()) {
+            instrumentation.retransformClasses(loadedTargets.toArray(new Class<?>[0]));
+        }
+    }
+}
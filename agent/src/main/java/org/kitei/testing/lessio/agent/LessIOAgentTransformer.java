@@ -0,0 +1,231 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.agent;
+
+import static java.lang.String.format;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Adds a call to {@link org.kitei.testing.lessio.agent.bridge.LessIOBridge} at the start of each JDK method
+ * that opens or deletes a file, or opens a socket or a process. All other classes are returned unchanged without being parsed.
+ */
+final class LessIOAgentTransformer implements ClassFileTransformer
+{
+    private static final String BRIDGE = "org/kitei/testing/lessio/agent/bridge/LessIOBridge";
+
+    // Argument index of the instance, in place of a parameter.
+    private static final int THIS = Integer.MIN_VALUE;
+
+    private static final Set<String> TARGET_CLASSES = new HashSet<>();
+
+    static {
+        for (final Target target : Target.values()) {
+            TARGET_CLASSES.add(target.owner);
+        }
+    }
+
+    static boolean isTarget(final Class<?> clazz)
+    {
+        return clazz.getClassLoader() == null && TARGET_CLASSES.contains(clazz.getName().replace('.', '/'));
+    }
+
+    @Override
+    public byte[] transform(final ClassLoader loader,
+                            final String className,
+                            final Class<?> classBeingRedefined,
+                            final ProtectionDomain protectionDomain,
+                            final byte[] classfileBuffer)
+    {
+        // Only the JDK classes are instrumented.
+        if (loader != null || className == null || !TARGET_CLASSES.contains(className)) {
+            return null;
+        }
+
+        try {
+            final ClassReader reader = new ClassReader(classfileBuffer);
+            final ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+            reader.accept(new TargetClassVisitor(className, writer), 0);
+            return writer.toByteArray();
+        }
+        catch (final RuntimeException e) {
+            // The JVM drops exceptions from transformers, make sure that a class without checks is noticed.
+            System.err.println(format("Could not instrument %s, IO through this class is not checked: %s", className, e));
+            return null;
+        }
+    }
+
+    private static final class TargetClassVisitor extends ClassVisitor
+    {
+        private final String className;
+
+        private TargetClassVisitor(final String className, final ClassVisitor classVisitor)
+        {
+            super(Opcodes.ASM9, classVisitor);
+            this.className = className;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(final int access, final String name, final String descriptor, final String signature, final String[] exceptions)
+        {
+            final MethodVisitor methodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
+            for (final Target target : Target.values()) {
+                if (target.matches(className, name, descriptor)) {
+                    return new TargetMethodVisitor(target, access, descriptor, methodVisitor);
+                }
+            }
+            return methodVisitor;
+        }
+    }
+
+    /**
+     * Calls the bridge with the method arguments before the original code. The injected code does not branch,
+     * so the existing stack map frames stay valid. In constructors, it runs before the super constructor call
+     * and only uses the arguments, never <code>this</code>.
+     */
+    private static final class TargetMethodVisitor extends MethodVisitor
+    {
+        private final Target target;
+        private final boolean isStatic;
+        private final Type[] parameterTypes;
+
+        private TargetMethodVisitor(final Target target, final int access, final String descriptor, final MethodVisitor methodVisitor)
+        {
+            super(Opcodes.ASM9, methodVisitor);
+            this.target = target;
+            this.isStatic = (access & Opcodes.ACC_STATIC) != 0;
+            this.parameterTypes = Type.getArgumentTypes(descriptor);
+        }
+
+        @Override
+        public void visitCode()
+        {
+            super.visitCode();
+            for (final int argument : target.arguments) {
+                if (argument == THIS) {
+                    super.visitVarInsn(Opcodes.ALOAD, 0);
+                    continue;
+                }
+
+                // A negative index counts from the last parameter.
+                final int parameter = argument < 0 ? parameterTypes.length + argument : argument;
+                int slot = isStatic ? 0 : 1;
+                for (int i = 0; i < parameter; i++) {
+                    slot += parameterTypes[i].getSize();
+                }
+                super.visitVarInsn(parameterTypes[parameter].getOpcode(Opcodes.ILOAD), slot);
+            }
+            super.visitMethodInsn(Opcodes.INVOKESTATIC, BRIDGE, target.bridgeMethod, target.bridgeDescriptor, false);
+        }
+    }
+
+    /**
+     * The arguments are the indexes of the parameters that are passed on to the bridge method.
+     */
+    private enum Target
+    {
+        FILE_INPUT_STREAM("java/io/FileInputStream", "<init>", "(Ljava/io/File;)V",
+            "checkRead", "(Ljava/io/File;)V", 0),
+        FILE_INPUT_STREAM_FD("java/io/FileInputStream", "<init>", "(Ljava/io/FileDescriptor;)V",
+            "checkRead", "(Ljava/io/FileDescriptor;)V", 0),
+        FILE_OUTPUT_STREAM("java/io/FileOutputStream", "<init>", "(Ljava/io/File;Z)V",
+            "checkWrite", "(Ljava/io/File;)V", 0),
+        FILE_OUTPUT_STREAM_FD("java/io/FileOutputStream", "<init>", "(Ljava/io/FileDescriptor;)V",
+            "checkWrite", "(Ljava/io/FileDescriptor;)V", 0),
+        RANDOM_ACCESS_FILE("java/io/RandomAccessFile", "<init>", "(Ljava/io/File;Ljava/lang/String;)V",
+            "checkRandomAccessFile", "(Ljava/io/File;Ljava/lang/String;)V", 0, 1),
+        FILE_DELETE("java/io/File", "delete", "()Z",
+            "checkDelete", "(Ljava/io/File;)V", THIS),
+        FILE_DELETE_ON_EXIT("java/io/File", "deleteOnExit", "()V",
+            "checkDelete", "(Ljava/io/File;)V", THIS),
+
+        // All of java.nio.file.Files and FileChannel#open() reach the provider of the default file system
+        // through these methods. Files#delete() and Files#deleteIfExists() both end up in implDelete().
+        UNIX_BYTE_CHANNEL("sun/nio/fs/UnixFileSystemProvider", "newByteChannel", "(Ljava/nio/file/Path;Ljava/util/Set;[Ljava/nio/file/attribute/FileAttribute;)",
+            "checkFileChannel", "(Ljava/nio/file/Path;Ljava/util/Set;)V", 0, 1),
+        UNIX_FILE_CHANNEL("sun/nio/fs/UnixFileSystemProvider", "newFileChannel", "(Ljava/nio/file/Path;Ljava/util/Set;[Ljava/nio/file/attribute/FileAttribute;)",
+            "checkFileChannel", "(Ljava/nio/file/Path;Ljava/util/Set;)V", 0, 1),
+        UNIX_DELETE("sun/nio/fs/UnixFileSystemProvider", "implDelete", "(Ljava/nio/file/Path;Z)Z",
+            "checkDelete", "(Ljava/nio/file/Path;)V", 0),
+        WINDOWS_BYTE_CHANNEL("sun/nio/fs/WindowsFileSystemProvider", "newByteChannel", "(Ljava/nio/file/Path;Ljava/util/Set;[Ljava/nio/file/attribute/FileAttribute;)",
+            "checkFileChannel", "(Ljava/nio/file/Path;Ljava/util/Set;)V", 0, 1),
+        WINDOWS_FILE_CHANNEL("sun/nio/fs/WindowsFileSystemProvider", "newFileChannel", "(Ljava/nio/file/Path;Ljava/util/Set;[Ljava/nio/file/attribute/FileAttribute;)",
+            "checkFileChannel", "(Ljava/nio/file/Path;Ljava/util/Set;)V", 0, 1),
+        WINDOWS_DELETE("sun/nio/fs/WindowsFileSystemProvider", "implDelete", "(Ljava/nio/file/Path;Z)Z",
+            "checkDelete", "(Ljava/nio/file/Path;)V", 0),
+
+        SOCKET_CONNECT("java/net/Socket", "connect", "(Ljava/net/SocketAddress;I)V",
+            "checkConnect", "(Ljava/net/SocketAddress;)V", 0),
+        SOCKET_BIND("java/net/Socket", "bind", "(Ljava/net/SocketAddress;)V",
+            "checkListen", "(Ljava/net/SocketAddress;)V", 0),
+        SERVER_SOCKET_BIND("java/net/ServerSocket", "bind", "(Ljava/net/SocketAddress;I)V",
+            "checkListen", "(Ljava/net/SocketAddress;)V", 0),
+        SOCKET_CHANNEL_CONNECT("sun/nio/ch/SocketChannelImpl", "connect", "(Ljava/net/SocketAddress;)Z",
+            "checkConnect", "(Ljava/net/SocketAddress;)V", 0),
+        SOCKET_CHANNEL_BIND("sun/nio/ch/SocketChannelImpl", "bind", "(Ljava/net/SocketAddress;)Ljava/nio/channels/SocketChannel;",
+            "checkListen", "(Ljava/net/SocketAddress;)V", 0),
+        SERVER_SOCKET_CHANNEL_BIND("sun/nio/ch/ServerSocketChannelImpl", "bind", "(Ljava/net/SocketAddress;I)Ljava/nio/channels/ServerSocketChannel;",
+            "checkListen", "(Ljava/net/SocketAddress;)V", 0),
+        // Every host name lookup passes the getAllByName0 overload that ends with (..., boolean check, boolean useCache)
+        // exactly once. Its other parameters vary between JDKs, the other overloads only delegate to it.
+        INET_ADDRESS_RESOLVE("java/net/InetAddress", "getAllByName0", "(Ljava/lang/String;", "ZZ)[Ljava/net/InetAddress;",
+            "checkResolve", "(Ljava/lang/String;Z)V", 0, -2),
+
+        PROCESS_BUILDER_START("java/lang/ProcessBuilder", "start", "([Ljava/lang/ProcessBuilder$Redirect;)",
+            "checkExec", "(Ljava/lang/ProcessBuilder;)V", THIS),
+
+        // Every class loader constructor ends up here.
+        CLASS_LOADER("java/lang/ClassLoader", "<init>", "(Ljava/lang/Void;Ljava/lang/String;Ljava/lang/ClassLoader;)V",
+            "refreshClasspath", "()V");
+
+        private final String owner;
+        private final String name;
+        private final String descriptorPrefix;
+        private final String descriptorSuffix;
+        private final String bridgeMethod;
+        private final String bridgeDescriptor;
+        private final int[] arguments;
+
+        Target(final String owner, final String name, final String descriptorPrefix, final String bridgeMethod, final String bridgeDescriptor, final int ... arguments)
+        {
+            this(owner, name, descriptorPrefix, "", bridgeMethod, bridgeDescriptor, arguments);
+        }
+
+        Target(final String owner, final String name, final String descriptorPrefix, final String descriptorSuffix, final String bridgeMethod, final String bridgeDescriptor, final int ... arguments)
+        {
+            this.owner = owner;
+            this.name = name;
+            this.descriptorPrefix = descriptorPrefix;
+            this.descriptorSuffix = descriptorSuffix;
+            this.bridgeMethod = bridgeMethod;
+            this.bridgeDescriptor = bridgeDescriptor;
+            this.arguments = arguments;
+        }
+
+        private boolean matches(final String className, final String methodName, final String descriptor)
+        {
+            return owner.equals(className) && name.equals(methodName) && descriptor.startsWith(descriptorPrefix) && descriptor.endsWith(descriptorSuffix);
+        }
+    }
+}
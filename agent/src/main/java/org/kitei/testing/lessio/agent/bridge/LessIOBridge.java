@@ -0,0 +1,341 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.agent.bridge;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The calls that the agent injects into the JDK IO entry points. This class is loaded by the bootstrap
+ * class loader, so it may only use JDK classes; the checks themselves are done by the installed
+ * {@link LessIOBridgeHook}.
+ *
+ * Until a hook is installed, every method returns right away. IO that happens while a hook runs on the
+ * same thread (e.g. loading a class from a jar) is not checked.
+ */
+public final class LessIOBridge
+{
+    private static final ThreadLocal<int[]> CALL_DEPTH = new CallDepth();
+
+    private static volatile LessIOBridgeHook hook = null;
+
+    private LessIOBridge()
+    {
+        throw new AssertionError("do not instantiate");
+    }
+
+    public static void install(final LessIOBridgeHook hook)
+    {
+        LessIOBridge.hook = hook;
+    }
+
+    public static void checkRead(final File file)
+    {
+        final LessIOBridgeHook current = hook;
+        if (current == null || file == null) {
+            return;
+        }
+
+        final int[] depth = enter();
+        if (depth != null) {
+            try {
+                current.checkRead(file.getPath());
+            }
+            finally {
+                depth[0]--;
+            }
+        }
+    }
+
+    public static void checkRead(final FileDescriptor fd)
+    {
+        final LessIOBridgeHook current = hook;
+        if (current == null || fd == null) {
+            return;
+        }
+
+        final int[] depth = enter();
+        if (depth != null) {
+            try {
+                current.checkRead(fd);
+            }
+            finally {
+                depth[0]--;
+            }
+        }
+    }
+
+    public static void checkWrite(final File file)
+    {
+        final LessIOBridgeHook current = hook;
+        if (current == null || file == null) {
+            return;
+        }
+
+        final int[] depth = enter();
+        if (depth != null) {
+            try {
+                current.checkWrite(file.getPath());
+            }
+            finally {
+                depth[0]--;
+            }
+        }
+    }
+
+    public static void checkWrite(final FileDescriptor fd)
+    {
+        final LessIOBridgeHook current = hook;
+        if (current == null || fd == null) {
+            return;
+        }
+
+        final int[] depth = enter();
+        if (depth != null) {
+            try {
+                current.checkWrite(fd);
+            }
+            finally {
+                depth[0]--;
+            }
+        }
+    }
+
+    /**
+     * A {@link java.io.RandomAccessFile} is always read and also written for any mode other than "r".
+     */
+    public static void checkRandomAccessFile(final File file, final String mode)
+    {
+        final LessIOBridgeHook current = hook;
+        if (current == null || file == null || mode == null) {
+            return;
+        }
+
+        final int[] depth = enter();
+        if (depth != null) {
+            try {
+                current.checkRead(file.getPath());
+                if (mode.indexOf('w') >= 0) {
+                    current.checkWrite(file.getPath());
+                }
+            }
+            finally {
+                depth[0]--;
+            }
+        }
+    }
+
+    /**
+     * Only channels of the default file system access local files. Opening a channel without
+     * WRITE or APPEND reads the file.
+     */
+    public static void checkFileChannel(final Path path, final Set<?> options)
+    {
+        final LessIOBridgeHook current = hook;
+        if (current == null || path == null || options == null || path.getFileSystem() != FileSystems.getDefault()) {
+            return;
+        }
+
+        final int[] depth = enter();
+        if (depth != null) {
+            try {
+                final String fileName = path.toString();
+                final boolean write = options.contains(StandardOpenOption.WRITE) || options.contains(StandardOpenOption.APPEND);
+                if (!write || options.contains(StandardOpenOption.READ)) {
+                    current.checkRead(fileName);
+                }
+                if (write) {
+                    current.checkWrite(fileName);
+                }
+                if (options.contains(StandardOpenOption.DELETE_ON_CLOSE)) {
+                    current.checkDelete(fileName);
+                }
+            }
+            finally {
+                depth[0]--;
+            }
+        }
+    }
+
+    public static void checkDelete(final File file)
+    {
+        final LessIOBridgeHook current = hook;
+        if (current == null || file == null) {
+            return;
+        }
+
+        final int[] depth = enter();
+        if (depth != null) {
+            try {
+                current.checkDelete(file.getPath());
+            }
+            finally {
+                depth[0]--;
+            }
+        }
+    }
+
+    public static void checkDelete(final Path path)
+    {
+        final LessIOBridgeHook current = hook;
+        if (current == null || path == null || path.getFileSystem() != FileSystems.getDefault()) {
+            return;
+        }
+
+        final int[] depth = enter();
+        if (depth != null) {
+            try {
+                current.checkDelete(path.toString());
+            }
+            finally {
+                depth[0]--;
+            }
+        }
+    }
+
+    public static void checkConnect(final SocketAddress address)
+    {
+        final LessIOBridgeHook current = hook;
+        if (current == null || !(address instanceof InetSocketAddress)) {
+            return;
+        }
+
+        final int[] depth = enter();
+        if (depth != null) {
+            try {
+                final InetSocketAddress endpoint = (InetSocketAddress) address;
+                final String host = endpoint.isUnresolved() ? endpoint.getHostName() : endpoint.getAddress().getHostAddress();
+                current.checkConnect(host, endpoint.getPort());
+            }
+            finally {
+                depth[0]--;
+            }
+        }
+    }
+
+    /**
+     * A null address binds to an ephemeral port.
+     */
+    public static void checkListen(final SocketAddress address)
+    {
+        final LessIOBridgeHook current = hook;
+        if (current == null || !(address == null || address instanceof InetSocketAddress)) {
+            return;
+        }
+
+        final int[] depth = enter();
+        if (depth != null) {
+            try {
+                current.checkListen(address == null ? 0 : ((InetSocketAddress) address).getPort());
+            }
+            finally {
+                depth[0]--;
+            }
+        }
+    }
+
+    /**
+     * Like the security manager check in {@link java.net.InetAddress}, lookups that the JDK does not check
+     * (e.g. the address of the local host) are not checked.
+     */
+    public static void checkResolve(final String host, final boolean check)
+    {
+        final LessIOBridgeHook current = hook;
+        if (current == null || host == null || !check) {
+            return;
+        }
+
+        final int[] depth = enter();
+        if (depth != null) {
+            try {
+                current.checkConnect(host, -1);
+            }
+            finally {
+                depth[0]--;
+            }
+        }
+    }
+
+    public static void checkExec(final ProcessBuilder processBuilder)
+    {
+        final LessIOBridgeHook current = hook;
+        if (current == null) {
+            return;
+        }
+
+        // An empty or invalid command fails in ProcessBuilder#start() itself.
+        final List<String> command = processBuilder.command();
+        if (command.isEmpty() || command.get(0) == null) {
+            return;
+        }
+
+        final int[] depth = enter();
+        if (depth != null) {
+            try {
+                current.checkExec(command.get(0));
+            }
+            finally {
+                depth[0]--;
+            }
+        }
+    }
+
+    public static void refreshClasspath()
+    {
+        final LessIOBridgeHook current = hook;
+        if (current == null) {
+            return;
+        }
+
+        final int[] depth = enter();
+        if (depth != null) {
+            try {
+                current.refreshClasspath();
+            }
+            finally {
+                depth[0]--;
+            }
+        }
+    }
+
+    /**
+     * @return the call depth of this thread, or null if a hook is already running on this thread.
+     */
+    private static int[] enter()
+    {
+        final int[] depth = CALL_DEPTH.get();
+        if (depth[0] != 0) {
+            return null;
+        }
+        depth[0]++;
+        return depth;
+    }
+
+    // Not a lambda, the bridge may run before the invokedynamic machinery is usable.
+    private static final class CallDepth extends ThreadLocal<int[]>
+    {
+        @Override
+        protected int[] initialValue()
+        {
+            return new int[1];
+        }
+    }
+}
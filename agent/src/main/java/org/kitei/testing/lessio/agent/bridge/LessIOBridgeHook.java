@@ -0,0 +1,44 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.agent.bridge;
+
+import java.io.FileDescriptor;
+
+/**
+ * Receives the operations reported by {@link LessIOBridge}. A hook returns normally if the operation is
+ * allowed and throws an unchecked exception if not. The arguments mirror the {@link SecurityManager} checks.
+ */
+public interface LessIOBridgeHook
+{
+    void checkRead(String fileName);
+
+    void checkRead(FileDescriptor fd);
+
+    void checkWrite(String fileName);
+
+    void checkWrite(FileDescriptor fd);
+
+    void checkDelete(String fileName);
+
+    /**
+     * @param port the port to connect to, -1 for a host name lookup.
+     */
+    void checkConnect(String host, int port);
+
+    void checkListen(int port);
+
+    void checkExec(String cmd);
+
+    void refreshClasspath();
+}
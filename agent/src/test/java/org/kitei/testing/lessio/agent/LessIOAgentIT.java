@@ -0,0 +1,189 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.agent;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+import static org.kitei.testing.lessio.agent.LessIOAgentScenarios.ALLOWED;
+import static org.kitei.testing.lessio.agent.LessIOAgentScenarios.DENIED;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.kitei.testing.lessio.LessIOEngine;
+
+/**
+ * Starts a JVM with the agent jar and checks the outcomes that {@link LessIOAgentScenarios} reports.
+ * The agent jar is given by the <code>lessio.agent.jar</code> system property.
+ */
+public class LessIOAgentIT
+{
+    private static final Map<String, String> OUTCOMES = new HashMap<>();
+    private static String output = "";
+
+    @BeforeClass
+    public static void runScenarios() throws Exception
+    {
+        final String agentJar = System.getProperty("lessio.agent.jar");
+        assumeTrue(agentJar != null && new File(agentJar).isFile());
+
+        // Only kitei-lessio and the scenarios, the agent classes come from the agent jar.
+        final String classpath = location(LessIOEngine.class) + File.pathSeparator + location(LessIOAgentScenarios.class);
+        final ProcessBuilder processBuilder = new ProcessBuilder(
+            Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+            "-javaagent:" + agentJar,
+            "-cp", classpath,
+            LessIOAgentScenarios.class.getName());
+        processBuilder.redirectErrorStream(true);
+
+        final Process process = processBuilder.start();
+        final StringBuilder lines = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.append(line).append('\n');
+                final int space = line.lastIndexOf(' ');
+                if (space > 0) {
+                    OUTCOMES.put(line.substring(0, space), line.substring(space + 1));
+                }
+            }
+        }
+        output = lines.toString();
+
+        if (!process.waitFor(60, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+        assertEquals(output, 0, process.exitValue());
+    }
+
+    private static String location(final Class<?> clazz) throws Exception
+    {
+        return Paths.get(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+    }
+
+    private static void assertOutcome(final String expected, final String scenario)
+    {
+        assertEquals(output, expected, OUTCOMES.get(scenario));
+    }
+
+    @Test
+    public void testOutsideOfTest()
+    {
+        assertOutcome(ALLOWED, "read.outside");
+    }
+
+    @Test
+    public void testDeniedRead()
+    {
+        assertOutcome(DENIED, "read.denied");
+    }
+
+    @Test
+    public void testCheckedAfterDenial()
+    {
+        assertOutcome(DENIED, "read.denied.again");
+    }
+
+    @Test
+    public void testAnnotatedRead()
+    {
+        assertOutcome(ALLOWED, "read.annotated");
+    }
+
+    @Test
+    public void testWhitelistedRead()
+    {
+        assertOutcome(ALLOWED, "read.whitelisted");
+    }
+
+    @Test
+    public void testDeniedNioRead()
+    {
+        assertOutcome(DENIED, "nio.read.denied");
+        assertOutcome(DENIED, "nio.stream.denied");
+        assertOutcome(DENIED, "nio.channel.denied");
+    }
+
+    @Test
+    public void testDeniedNioWrite()
+    {
+        assertOutcome(DENIED, "nio.write.denied");
+    }
+
+    @Test
+    public void testAnnotatedNioReadAndWrite()
+    {
+        assertOutcome(ALLOWED, "nio.read.annotated");
+        assertOutcome(ALLOWED, "nio.write.annotated");
+    }
+
+    @Test
+    public void testWhitelistedNioRead()
+    {
+        assertOutcome(ALLOWED, "nio.read.whitelisted");
+    }
+
+    @Test
+    public void testDeniedDelete()
+    {
+        assertOutcome(DENIED, "delete.denied");
+        assertOutcome(DENIED, "nio.delete.denied");
+        assertOutcome(DENIED, "nio.deleteIfExists.denied");
+    }
+
+    @Test
+    public void testAnnotatedDelete()
+    {
+        assertOutcome(ALLOWED, "nio.delete.annotated");
+    }
+
+    @Test
+    public void testDeniedConnect()
+    {
+        assertOutcome(DENIED, "connect.denied");
+    }
+
+    @Test
+    public void testAnnotatedConnect()
+    {
+        assertOutcome(ALLOWED, "connect.annotated");
+    }
+
+    @Test
+    public void testDeniedResolve()
+    {
+        assertOutcome(DENIED, "resolve.denied");
+    }
+
+    @Test
+    public void testDeniedExec()
+    {
+        assertOutcome(DENIED, "exec.denied");
+    }
+
+    @Test
+    public void testAnnotatedExec()
+    {
+        assertOutcome(ALLOWED, "exec.annotated");
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.agent;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.kitei.testing.lessio.AllowExternalProcess;
+import org.kitei.testing.lessio.AllowNetworkAccess;
+import org.kitei.testing.lessio.AllowTmpDirAccess;
+import org.kitei.testing.lessio.LessIOException;
+import org.kitei.testing.lessio.LessIOTestThreads;
+
+/**
+ * Runs in a JVM that was started with the agent by {@link LessIOAgentIT}. Prints one line with the
+ * outcome of each operation.
+ */
+public final class LessIOAgentScenarios
+{
+    static final String ALLOWED = "allowed";
+    static final String DENIED = "denied";
+
+    static final String UNKNOWN_HOST = "lessio.invalid";
+    static final String UNKNOWN_COMMAND = "lessio-unknown-command";
+
+    private interface Operation
+    {
+        void run() throws IOException;
+    }
+
+    @AllowTmpDirAccess
+    private static final class TmpDirAccess
+    {
+        static void read(final File file) throws IOException
+        {
+            new FileInputStream(file).close();
+        }
+
+        static void read(final Path path) throws IOException
+        {
+            Files.readAllBytes(path);
+        }
+
+        static void write(final Path path) throws IOException
+        {
+            Files.write(path, new byte[] {1});
+        }
+
+        static void delete(final Path path) throws IOException
+        {
+            Files.delete(path);
+        }
+    }
+
+    @AllowNetworkAccess(endpoints = UNKNOWN_HOST + ":80")
+    private static final class Connector
+    {
+        static void connect() throws IOException
+        {
+            try (Socket socket = new Socket()) {
+                socket.connect(InetSocketAddress.createUnresolved(UNKNOWN_HOST, 80));
+            }
+        }
+    }
+
+    @AllowExternalProcess
+    private static final class ProcessStarter
+    {
+        static void start() throws IOException
+        {
+            new ProcessBuilder(UNKNOWN_COMMAND).start();
+        }
+    }
+
+    private LessIOAgentScenarios()
+    {
+        throw new AssertionError("do not instantiate");
+    }
+
+    public static void main(final String[] args) throws IOException
+    {
+        final File tmpFile = File.createTempFile("lessio-agent", ".tmp");
+        tmpFile.deleteOnExit();
+        final Path tmpPath = tmpFile.toPath();
+        final File javaHomeFile = Paths.get(System.getProperty("java.home"), "release").toFile();
+
+        // No test runs on this thread yet.
+        run("read.outside", () -> new FileInputStream(tmpFile).close());
+
+        LessIOTestThreads.enter(LessIOAgentScenarios.class);
+        try {
+            run("read.denied", () -> new FileInputStream(tmpFile).close());
+            // Still checked after a denial, the bridge resets its reentrancy guard.
+            run("read.denied.again", () -> new FileInputStream(tmpFile).close());
+            run("read.annotated", () -> TmpDirAccess.read(tmpFile));
+            run("read.whitelisted", () -> new FileInputStream(javaHomeFile).close());
+
+            // java.nio.file.Files does not go through FileChannel#open().
+            run("nio.read.denied", () -> Files.readAllBytes(tmpPath));
+            run("nio.stream.denied", () -> Files.newInputStream(tmpPath).close());
+            run("nio.channel.denied", () -> Files.newByteChannel(tmpPath).close());
+            run("nio.write.denied", () -> Files.write(tmpPath, new byte[] {1}));
+            run("nio.read.annotated", () -> TmpDirAccess.read(tmpPath));
+            run("nio.write.annotated", () -> TmpDirAccess.write(tmpPath));
+            run("nio.read.whitelisted", () -> Files.readAllBytes(javaHomeFile.toPath()));
+
+            run("delete.denied", tmpFile::delete);
+            run("nio.delete.denied", () -> Files.delete(tmpPath));
+            run("nio.deleteIfExists.denied", () -> Files.deleteIfExists(tmpPath));
+            // Deletes the file, keep it last.
+            run("nio.delete.annotated", () -> TmpDirAccess.delete(tmpPath));
+
+            run("connect.denied", () -> {
+                try (Socket socket = new Socket()) {
+                    socket.connect(InetSocketAddress.createUnresolved(UNKNOWN_HOST, 80));
+                }
+            });
+            run("connect.annotated", Connector::connect);
+            run("resolve.denied", () -> InetAddress.getByName(UNKNOWN_HOST));
+
+            run("exec.denied", () -> new ProcessBuilder(UNKNOWN_COMMAND).start());
+            run("exec.annotated", ProcessStarter::start);
+        }
+        finally {
+            LessIOTestThreads.exit();
+        }
+    }
+
+    private static void run(final String name, final Operation operation)
+    {
+        String outcome;
+        try {
+            operation.run();
+            outcome = ALLOWED;
+        }
+        catch (final LessIOException e) {
+            outcome = DENIED;
+        }
+        catch (final IOException e) {
+            // Allowed, but the file, host or command does not exist.
+            outcome = ALLOWED;
+        }
+        System.out.println(name + " " + outcome);
+    }
+}
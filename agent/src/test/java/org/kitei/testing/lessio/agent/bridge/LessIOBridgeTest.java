@@ -0,0 +1,155 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.agent.bridge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LessIOBridgeTest
+{
+    /**
+     * Records all checks. A read of "nested" reads another file from inside the check, like a hook that
+     * loads a class from a jar; a read of "denied" throws.
+     */
+    private static final class RecordingHook implements LessIOBridgeHook
+    {
+        private final List<String> checks = new ArrayList<>();
+
+        @Override
+        public void checkRead(final String fileName)
+        {
+            checks.add("read " + fileName);
+            if (fileName.equals("nested")) {
+                LessIOBridge.checkRead(new File("inner"));
+            }
+            else if (fileName.equals("denied")) {
+                throw new IllegalStateException(fileName);
+            }
+        }
+
+        @Override
+        public void checkRead(final FileDescriptor fd)
+        {
+            checks.add("read fd");
+        }
+
+        @Override
+        public void checkWrite(final String fileName)
+        {
+            checks.add("write " + fileName);
+        }
+
+        @Override
+        public void checkWrite(final FileDescriptor fd)
+        {
+            checks.add("write fd");
+        }
+
+        @Override
+        public void checkDelete(final String fileName)
+        {
+            checks.add("delete " + fileName);
+        }
+
+        @Override
+        public void checkConnect(final String host, final int port)
+        {
+            checks.add("connect " + host + ":" + port);
+        }
+
+        @Override
+        public void checkListen(final int port)
+        {
+            checks.add("listen " + port);
+        }
+
+        @Override
+        public void checkExec(final String cmd)
+        {
+            checks.add("exec " + cmd);
+        }
+
+        @Override
+        public void refreshClasspath()
+        {
+            checks.add("classpath");
+        }
+    }
+
+    private RecordingHook hook;
+
+    @Before
+    public void setUp()
+    {
+        hook = new RecordingHook();
+        LessIOBridge.install(hook);
+    }
+
+    @After
+    public void tearDown()
+    {
+        LessIOBridge.install(null);
+    }
+
+    @Test
+    public void testNestedCheckIsSkipped()
+    {
+        LessIOBridge.checkRead(new File("nested"));
+        LessIOBridge.checkRead(new File("outer"));
+
+        assertEquals(List.of("read nested", "read outer"), hook.checks);
+    }
+
+    @Test
+    public void testCheckedAfterDenial()
+    {
+        try {
+            LessIOBridge.checkRead(new File("denied"));
+            fail();
+        }
+        catch (final IllegalStateException e) {
+            // expected
+        }
+        LessIOBridge.checkRead(new File("outer"));
+
+        assertEquals(List.of("read denied", "read outer"), hook.checks);
+    }
+
+    @Test
+    public void testResolveIsOnlyCheckedIfTheJdkChecks()
+    {
+        LessIOBridge.checkResolve("unchecked", false);
+        LessIOBridge.checkResolve("checked", true);
+
+        assertEquals(List.of("connect checked:-1"), hook.checks);
+    }
+
+    @Test
+    public void testRandomAccessFile()
+    {
+        LessIOBridge.checkRandomAccessFile(new File("r"), "r");
+        LessIOBridge.checkRandomAccessFile(new File("rw"), "rw");
+
+        assertEquals(List.of("read r", "read rw", "write rw"), hook.checks);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+/**
+ * A security manager with the default context plus benchmark specific testrunner and whitelisted classes.
+ * It is never installed, the benchmarks call the check methods directly.
+ */
+final class BenchmarkSecurityManager
+    extends LessIOSecurityManager
+{
+    static LessIOSecurityManager create(final Class<?> ... testrunnerClasses)
+    {
+        return new BenchmarkSecurityManager(defaultContextBuilder()
+            .addTestrunnerClasses(testrunnerClasses)
+            .build());
+    }
+
+    static LessIOSecurityManager create(final Class<?>[] testrunnerClasses, final Class<?>[] whitelistedClasses)
+    {
+        return new BenchmarkSecurityManager(defaultContextBuilder()
+            .addTestrunnerClasses(testrunnerClasses)
+            .addWhitelistedClasses(whitelistedClasses)
+            .build());
+    }
+
+    private BenchmarkSecurityManager(final LessIOContext context)
+    {
+        super(context);
+    }
+}
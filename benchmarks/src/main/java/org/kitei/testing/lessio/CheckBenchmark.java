@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a single check for every check type, allowed and denied, on warm and empty caches and in a new JVM.
+ *
+ * The benchmark class is the testrunner class, so the checks are enforced. Run with {@code -prof gc}
+ * to get allocation rates.
+ *
+ * "emptyCaches" uses a new security manager for every measured check in a warmed up JVM. Its whitelist,
+ * testrunner and path caches and its per-thread predicates are empty. The annotation profiles are attached
+ * to the classes and stay warm after the first check, the check code is compiled.
+ *
+ * "firstCheck" measures only the first check in each fork, right after the security manager is created.
+ * The classes that only the check sees have no profile yet and the check code is still interpreted.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class CheckBenchmark
+{
+    @Param
+    public CheckType checkType;
+
+    @Param
+    public Outcome outcome;
+
+    @State(Scope.Benchmark)
+    public static class WarmSecurityManager
+    {
+        LessIOSecurityManager securityManager;
+
+        @Setup(Level.Trial)
+        public void setUp()
+        {
+            securityManager = BenchmarkSecurityManager.create(CheckBenchmark.class);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class NewSecurityManager
+    {
+        LessIOSecurityManager securityManager;
+
+        @Setup(Level.Iteration)
+        public void setUp()
+        {
+            securityManager = BenchmarkSecurityManager.create(CheckBenchmark.class);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(SECONDS)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public LessIOException warm(final WarmSecurityManager state)
+    {
+        return outcome.run(state.securityManager, checkType);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(MICROSECONDS)
+    @Warmup(iterations = 20)
+    @Measurement(iterations = 200)
+    public LessIOException emptyCaches(final NewSecurityManager state)
+    {
+        return outcome.run(state.securityManager, checkType);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(MICROSECONDS)
+    @Fork(10)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public LessIOException firstCheck(final NewSecurityManager state)
+    {
+        return outcome.run(state.securityManager, checkType);
+    }
+}
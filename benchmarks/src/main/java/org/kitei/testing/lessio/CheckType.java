@@ -0,0 +1,136 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import java.io.FileDescriptor;
+import java.net.InetAddress;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.nio.file.Paths;
+
+/**
+ * Every operation checked by the security manager. The resources are chosen so that only the
+ * annotations on {@link AllowedCaller} can grant them.
+ */
+public enum CheckType
+{
+    READ {
+        @Override
+        void check(final LessIOSecurityManager securityManager)
+        {
+            securityManager.checkRead(BENCHMARK_FILE);
+        }
+    },
+    WRITE {
+        @Override
+        void check(final LessIOSecurityManager securityManager)
+        {
+            securityManager.checkWrite(BENCHMARK_FILE);
+        }
+    },
+    DELETE {
+        @Override
+        void check(final LessIOSecurityManager securityManager)
+        {
+            securityManager.checkDelete(BENCHMARK_FILE);
+        }
+    },
+    /** A file on the classpath, which is allowed without looking at the stack. */
+    READ_CLASSPATH {
+        @Override
+        void check(final LessIOSecurityManager securityManager)
+        {
+            securityManager.checkRead(CLASSPATH_FILE);
+        }
+    },
+    READ_FD {
+        @Override
+        void check(final LessIOSecurityManager securityManager)
+        {
+            securityManager.checkRead(BENCHMARK_FD);
+        }
+    },
+    WRITE_FD {
+        @Override
+        void check(final LessIOSecurityManager securityManager)
+        {
+            securityManager.checkWrite(BENCHMARK_FD);
+        }
+    },
+    CONNECT {
+        @Override
+        void check(final LessIOSecurityManager securityManager)
+        {
+            securityManager.checkConnect(BENCHMARK_HOST, BENCHMARK_PORT);
+        }
+    },
+    RESOLVE {
+        @Override
+        void check(final LessIOSecurityManager securityManager)
+        {
+            securityManager.checkConnect(BENCHMARK_DNS_NAME, -1);
+        }
+    },
+    ACCEPT {
+        @Override
+        void check(final LessIOSecurityManager securityManager)
+        {
+            securityManager.checkAccept(BENCHMARK_HOST, BENCHMARK_PORT);
+        }
+    },
+    LISTEN {
+        @Override
+        void check(final LessIOSecurityManager securityManager)
+        {
+            securityManager.checkListen(BENCHMARK_PORT);
+        }
+    },
+    MULTICAST {
+        @Override
+        void check(final LessIOSecurityManager securityManager)
+        {
+            securityManager.checkMulticast(BENCHMARK_MULTICAST_ADDRESS);
+        }
+    },
+    EXEC {
+        @Override
+        void check(final LessIOSecurityManager securityManager)
+        {
+            securityManager.checkExec(BENCHMARK_COMMAND);
+        }
+    };
+
+    static final String BENCHMARK_DIRECTORY = "/kitei-lessio-benchmark";
+    static final String BENCHMARK_FILE = BENCHMARK_DIRECTORY + "/data.bin";
+    static final String BENCHMARK_HOST = "192.0.2.1";
+    static final int BENCHMARK_PORT = 8080;
+    static final String BENCHMARK_DNS_NAME = "kitei-lessio-benchmark.example";
+    static final String BENCHMARK_COMMAND = "/bin/true";
+
+    static final String CLASSPATH_FILE;
+    static final FileDescriptor BENCHMARK_FD = new FileDescriptor();
+    static final InetAddress BENCHMARK_MULTICAST_ADDRESS;
+
+    static {
+        try {
+            CLASSPATH_FILE = Paths.get(LessIOSecurityManager.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+            BENCHMARK_MULTICAST_ADDRESS = InetAddress.getByAddress(new byte[] {(byte) 239, 0, 0, 1});
+        }
+        catch (final URISyntaxException | UnknownHostException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    abstract void check(LessIOSecurityManager securityManager);
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of a mix of file, network and exec checks against a single security manager that is
+ * shared by all benchmark threads. Use {@link ContentionBenchmarkRunner} to run it with 1 to 64 threads.
+ *
+ * The shared path cache reports its statistics at the end of every trial. Lock contention in the JVM
+ * is reported by the {@code hs_rt} profiler (contended lock attempts and monitor inflations).
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class ContentionBenchmark
+{
+    private static final CheckType[] MIX = {
+        CheckType.READ_CLASSPATH,
+        CheckType.READ,
+        CheckType.READ_CLASSPATH,
+        CheckType.WRITE,
+        CheckType.CONNECT,
+        CheckType.READ_CLASSPATH,
+        CheckType.RESOLVE,
+        CheckType.EXEC
+    };
+
+    private LessIOSecurityManager securityManager;
+
+    @State(Scope.Thread)
+    public static class Position
+    {
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp()
+        {
+            // Start the threads at different positions of the mix.
+            next = (int) Thread.currentThread().getId();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        securityManager = BenchmarkSecurityManager.create(ContentionBenchmark.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        final LessIODecisionCache<String> cache = securityManager.getPathWhitelistCache();
+        System.out.println(format("Path cache: %d entries, %d hits, %d misses, %d evictions, %d invalidations",
+            cache.size(),
+            cache.getHitCount(),
+            cache.getMissCount(),
+            cache.getEvictionCount(),
+            cache.getInvalidationCount()));
+    }
+
+    @Benchmark
+    public LessIOException mixed(final Position position)
+    {
+        final CheckType checkType = MIX[(position.next++ & Integer.MAX_VALUE) % MIX.length];
+        return Outcome.ALLOWED.run(securityManager, checkType);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static java.lang.String.format;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link ContentionBenchmark} with 1, 2, 4, ... 64 threads and prints how throughput scales.
+ * All arguments are passed on to JMH, e.g. {@code -prof hs_rt} to report lock contention.
+ */
+public final class ContentionBenchmarkRunner
+{
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    private ContentionBenchmarkRunner()
+    {
+        throw new AssertionError("do not instantiate");
+    }
+
+    public static void main(final String[] args)
+        throws Exception
+    {
+        final Options commandLineOptions = new CommandLineOptions(args);
+        final double[] scores = new double[THREADS.length];
+        String unit = "";
+
+        for (int i = 0; i < THREADS.length; i++) {
+            final Options options = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .include(ContentionBenchmark.class.getName())
+                .threads(THREADS[i])
+                .build();
+
+            for (final RunResult result : new Runner(options).run()) {
+                scores[i] = result.getPrimaryResult().getScore();
+                unit = result.getPrimaryResult().getScoreUnit();
+            }
+        }
+
+        System.out.println();
+        System.out.println(format("%8s %16s %10s %12s", "threads", unit, "speedup", "efficiency"));
+        for (int i = 0; i < THREADS.length; i++) {
+            final double speedup = scores[0] == 0 ? 0 : scores[i] / scores[0];
+            System.out.println(format("%8d %16.0f %9.2fx %11.0f%%", THREADS[i], scores[i], speedup, 100 * speedup / THREADS[i]));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+/**
+ * Whether a check is granted by an annotated class on the stack or denied because only the
+ * testrunner class is present.
+ */
+public enum Outcome
+{
+    ALLOWED {
+        @Override
+        void call(final LessIOSecurityManager securityManager, final CheckType checkType)
+        {
+            AllowedCaller.call(securityManager, checkType);
+        }
+    },
+    DENIED {
+        @Override
+        void call(final LessIOSecurityManager securityManager, final CheckType checkType)
+        {
+            DeniedCaller.call(securityManager, checkType);
+        }
+    };
+
+    /**
+     * @return the exception that denied the check or null if it was allowed.
+     */
+    LessIOException run(final LessIOSecurityManager securityManager, final CheckType checkType)
+    {
+        try {
+            call(securityManager, checkType);
+            return null;
+        }
+        catch (final LessIOException e) {
+            return e;
+        }
+    }
+
+    abstract void call(LessIOSecurityManager securityManager, CheckType checkType);
+}
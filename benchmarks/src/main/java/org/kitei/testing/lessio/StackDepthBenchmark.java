@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of a check against the depth of the call stack. The check runs at the top of a
+ * {@link SyntheticStack}. Unless the stack is decided by its outermost frame, it is denied by the
+ * benchmark class, which is a testrunner class.
+ *
+ * Use {@code -rf csv} to get the results in a form that can be charted by depth.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xss8m")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StackDepthBenchmark
+{
+    @Param({"10", "100", "500", "2000"})
+    public int depth;
+
+    @Param({"0", "25", "100"})
+    public int annotatedPercent;
+
+    @Param({"0", "10"})
+    public int runnerPercent;
+
+    @Param({"GRANTING", "WHITELISTED", "NONE"})
+    public SyntheticStack.Bottom bottom;
+
+    @Param({"READ", "CONNECT", "EXEC"})
+    public CheckType checkType;
+
+    private SyntheticStack stack;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        final Class<?>[] testrunnerClasses = new Class<?>[SyntheticStack.TESTRUNNER_CLASSES.length + 1];
+        System.arraycopy(SyntheticStack.TESTRUNNER_CLASSES, 0, testrunnerClasses, 0, SyntheticStack.TESTRUNNER_CLASSES.length);
+        testrunnerClasses[testrunnerClasses.length - 1] = StackDepthBenchmark.class;
+
+        final int annotated = Math.min(annotatedPercent, 100 - runnerPercent);
+        final LessIOSecurityManager securityManager = BenchmarkSecurityManager.create(testrunnerClasses, SyntheticStack.WHITELISTED_CLASSES);
+        stack = new SyntheticStack(depth, annotated, runnerPercent, bottom, securityManager, checkType);
+    }
+
+    @Benchmark
+    public LessIOException check()
+    {
+        return stack.call();
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static org.kitei.testing.lessio.CheckType.BENCHMARK_DIRECTORY;
+
+/**
+ * A call stack of a given depth, built from classes that are plain, annotated, testrunner or whitelisted
+ * classes. The check runs in the innermost frame, so the security manager has to walk through all
+ * synthetic frames unless a class close to the top decides it.
+ */
+public final class SyntheticStack
+{
+    public enum Bottom
+    {
+        /** The outermost synthetic frame grants the check. */
+        GRANTING,
+        /** The outermost synthetic frame is a whitelisted class. */
+        WHITELISTED,
+        /** Nothing grants the check, it is denied. */
+        NONE
+    }
+
+    static final Class<?>[] TESTRUNNER_CLASSES = {RunnerFrameA.class, RunnerFrameB.class};
+    static final Class<?>[] WHITELISTED_CLASSES = {WhitelistedFrame.class};
+
+    private final Frame[] frames;
+    private final LessIOSecurityManager securityManager;
+    private final CheckType checkType;
+
+    /**
+     * @param annotatedPercent the share of frames that belong to annotated classes which do not grant the check.
+     * @param runnerPercent the share of frames that belong to testrunner classes.
+     */
+    SyntheticStack(final int depth, final int annotatedPercent, final int runnerPercent, final Bottom bottom,
+                   final LessIOSecurityManager securityManager, final CheckType checkType)
+    {
+        if (depth < 1 || annotatedPercent < 0 || runnerPercent < 0 || annotatedPercent + runnerPercent > 100) {
+            throw new IllegalArgumentException("invalid stack layout");
+        }
+
+        this.securityManager = securityManager;
+        this.checkType = checkType;
+
+        // frames[0] is the innermost frame.
+        this.frames = new Frame[depth];
+        for (int i = 0; i < depth - 1; i++) {
+            // Spread the frame kinds over the stack instead of clustering them.
+            final int slot = (i * 37) % 100;
+            final boolean even = (i & 1) == 0;
+            if (slot < annotatedPercent) {
+                frames[i] = even ? new AnnotatedFrameA() : new AnnotatedFrameB();
+            }
+            else if (slot < annotatedPercent + runnerPercent) {
+                frames[i] = even ? new RunnerFrameA() : new RunnerFrameB();
+            }
+            else {
+                // Alternate classes, consecutive frames of the same class are only inspected once.
+                frames[i] = even ? new PlainFrameA() : new PlainFrameB();
+            }
+        }
+
+        switch (bottom) {
+            case GRANTING:
+                frames[depth - 1] = new GrantingFrame();
+                break;
+            case WHITELISTED:
+                frames[depth - 1] = new WhitelistedFrame();
+                break;
+            default:
+                frames[depth - 1] = (depth & 1) == 0 ? new PlainFrameB() : new PlainFrameA();
+                break;
+        }
+    }
+
+    /**
+     * @return the exception that denied the check or null if it was allowed.
+     */
+    LessIOException call()
+    {
+        final int outermost = frames.length - 1;
+        return frames[outermost].descend(this, outermost);
+    }
+
+    private LessIOException check()
+    {
+        try {
+            checkType.check(securityManager);
+            return null;
+        }
+        catch (final LessIOException e) {
+            return e;
+        }
+    }
+
+    // Every frame class repeats the same body, the frame on the stack must belong to the subclass.
+
+    abstract static class Frame
+    {
+        abstract LessIOException descend(SyntheticStack stack, int index);
+    }
+
+    static final class PlainFrameA extends Frame
+    {
+        @Override
+        LessIOException descend(final SyntheticStack stack, final int index)
+        {
+            return index == 0 ? stack.check() : stack.frames[index - 1].descend(stack, index - 1);
+        }
+    }
+
+    static final class PlainFrameB extends Frame
+    {
+        @Override
+        LessIOException descend(final SyntheticStack stack, final int index)
+        {
+            return index == 0 ? stack.check() : stack.frames[index - 1].descend(stack, index - 1);
+        }
+    }
+
+    // Annotated, but none of the annotations grants any of the benchmark operations.
+
+    @AllowLocalFileAccess(paths = "/kitei-lessio-elsewhere/*")
+    @AllowNetworkAccess(endpoints = "192.0.2.2:1")
+    @AllowNetworkListen(ports = 1)
+    static final class AnnotatedFrameA extends Frame
+    {
+        @Override
+        LessIOException descend(final SyntheticStack stack, final int index)
+        {
+            return index == 0 ? stack.check() : stack.frames[index - 1].descend(stack, index - 1);
+        }
+    }
+
+    @AllowLocalFileAccess(paths = "/kitei-lessio-elsewhere/*")
+    @AllowNetworkAccess(endpoints = "192.0.2.2:1")
+    @AllowNetworkListen(ports = 1)
+    static final class AnnotatedFrameB extends Frame
+    {
+        @Override
+        LessIOException descend(final SyntheticStack stack, final int index)
+        {
+            return index == 0 ? stack.check() : stack.frames[index - 1].descend(stack, index - 1);
+        }
+    }
+
+    static final class RunnerFrameA extends Frame
+    {
+        @Override
+        LessIOException descend(final SyntheticStack stack, final int index)
+        {
+            return index == 0 ? stack.check() : stack.frames[index - 1].descend(stack, index - 1);
+        }
+    }
+
+    static final class RunnerFrameB extends Frame
+    {
+        @Override
+        LessIOException descend(final SyntheticStack stack, final int index)
+        {
+            return index == 0 ? stack.check() : stack.frames[index - 1].descend(stack, index - 1);
+        }
+    }
+
+    static final class WhitelistedFrame extends Frame
+    {
+        @Override
+        LessIOException descend(final SyntheticStack stack, final int index)
+        {
+            return index == 0 ? stack.check() : stack.frames[index - 1].descend(stack, index - 1);
+        }
+    }
+
+    @AllowDNSResolution
+    @AllowExternalProcess
+    @AllowFileDescriptorIO
+    @AllowLocalFileAccess(paths = BENCHMARK_DIRECTORY + "/*")
+    @AllowNetworkAccess(endpoints = "192.0.2.1:8080")
+    @AllowNetworkListen(ports = 8080)
+    @AllowNetworkMulticast
+    static final class GrantingFrame extends Frame
+    {
+        @Override
+        LessIOException descend(final SyntheticStack stack, final int index)
+        {
+            return index == 0 ? stack.check() : stack.frames[index - 1].descend(stack, index - 1);
+        }
+    }
+}
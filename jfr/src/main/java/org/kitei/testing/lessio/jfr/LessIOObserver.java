@@ -0,0 +1,363 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.jfr;
+
+import static java.lang.String.format;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+import org.kitei.testing.lessio.LessIOEngine;
+import org.kitei.testing.lessio.LessIOException;
+import org.kitei.testing.lessio.LessIOOperation;
+import org.kitei.testing.lessio.LessIOStackSource;
+
+/**
+ * Observes the IO of a running JVM through JDK Flight Recorder events and checks it against the Allow*
+ * annotations after the fact. Nothing is enforced: the IO itself is never delayed or denied, the threads that
+ * do the IO only pay for recording the events. Violations are collected and reported when the observer is
+ * closed.
+ *
+ * Only operations with a JFR event are observed: file reads and writes, socket reads and writes and process
+ * starts. A socket event only has the remote endpoint. Traffic to a remote ephemeral port is checked like
+ * accepting a connection from that endpoint, all other traffic like connecting to it.
+ *
+ * The stack of an event is limited to the JFR stack depth (64 frames by default, see
+ * <code>-XX:FlightRecorderOptions:stackdepth</code> and {@link #setStackDepth(int)}). Operations whose stack
+ * is cut off are not checked, they are only counted.
+ */
+public final class LessIOObserver implements AutoCloseable
+{
+    private static final String FILE_READ = "jdk.FileRead";
+    private static final String FILE_WRITE = "jdk.FileWrite";
+    private static final String SOCKET_READ = "jdk.SocketRead";
+    private static final String SOCKET_WRITE = "jdk.SocketWrite";
+    private static final String PROCESS_START = "jdk.ProcessStart";
+
+    private static final String[] OBSERVED_EVENTS = { FILE_READ, FILE_WRITE, SOCKET_READ, SOCKET_WRITE, PROCESS_START };
+
+    private static final long START_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final long FLUSH_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private final LessIOEngine engine;
+    private final ClassLoader classLoader;
+
+    private final RecordingStream stream = new RecordingStream();
+    private final CountDownLatch flushed = new CountDownLatch(1);
+
+    // Only used by the thread that delivers the events. A null value marks a class that can not be loaded.
+    private final Map<String, Class<?>> classes = new HashMap<>();
+
+    private final Map<String, LessIOViolation> violations = new LinkedHashMap<>();
+    private int truncatedCount = 0;
+
+    /**
+     * Observe with the default rules. Classes on the recorded stacks are loaded from the system class loader.
+     */
+    public static LessIOObserver start()
+    {
+        return start(LessIOEngine.create(), ClassLoader.getSystemClassLoader());
+    }
+
+    /**
+     * Set the JFR stack depth of this JVM, unless it was given on the command line. This only has an effect
+     * before JFR records its first stack trace, e.g. in a java agent before the observer starts.
+     */
+    public static void setStackDepth(final int stackDepth)
+    {
+        for (final String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith("-XX:FlightRecorderOptions") && argument.contains("stackdepth=")) {
+                return;
+            }
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().invoke(new ObjectName("com.sun.management:type=DiagnosticCommand"),
+                "jfrConfigure",
+                new Object[] { new String[] { "stackdepth=" + stackDepth } },
+                new String[] { String[].class.getName() });
+        }
+        catch (final JMException e) {
+            throw new IllegalStateException("Could not set the JFR stack depth", e);
+        }
+    }
+
+    public static LessIOObserver start(final LessIOEngine engine, final ClassLoader classLoader)
+    {
+        final LessIOObserver observer = new LessIOObserver(engine, classLoader);
+
+        // startAsync() would deliver the events on a thread that keeps the JVM alive.
+        final CountDownLatch running = new CountDownLatch(1);
+        final FlightRecorderListener listener = new FlightRecorderListener() {
+            @Override
+            public void recordingStateChanged(final Recording recording)
+            {
+                if (recording.getState() == RecordingState.RUNNING) {
+                    running.countDown();
+                }
+            }
+        };
+
+        FlightRecorder.addListener(listener);
+        try {
+            final Thread thread = new Thread(observer.stream::start, "lessio-observer");
+            thread.setDaemon(true);
+            thread.start();
+
+            // Nothing is recorded before the recording runs.
+            running.await(START_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            FlightRecorder.removeListener(listener);
+        }
+        return observer;
+    }
+
+    private LessIOObserver(final LessIOEngine engine, final ClassLoader classLoader)
+    {
+        this.engine = Objects.requireNonNull(engine, "engine is null");
+        this.classLoader = Objects.requireNonNull(classLoader, "classLoader is null");
+
+        // IO events are only recorded above a duration threshold by default.
+        for (final String observedEvent : OBSERVED_EVENTS) {
+            stream.enable(observedEvent).withThreshold(Duration.ZERO).withStackTrace();
+        }
+        stream.enable(Flush.class);
+
+        stream.onEvent(this::observe);
+        // The recording also ends when the JVM shuts down.
+        stream.onClose(flushed::countDown);
+    }
+
+    /**
+     * Wait for the events recorded so far and stop observing.
+     */
+    @Override
+    public void close()
+    {
+        // Events are delivered in batches, in the order they were recorded. Once the flush event
+        // arrives, all events recorded before it have been checked.
+        new Flush().commit();
+        try {
+            flushed.await(FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        stream.close();
+    }
+
+    public synchronized List<LessIOViolation> getViolations()
+    {
+        return new ArrayList<>(violations.values());
+    }
+
+    /**
+     * The number of operations that were not checked because their stack was deeper than the JFR stack depth.
+     */
+    public synchronized int getTruncatedCount()
+    {
+        return truncatedCount;
+    }
+
+    public void report(final PrintStream out)
+    {
+        final int truncated = getTruncatedCount();
+        if (truncated > 0) {
+            out.println(format("LessIO could not check %d operations, their stacks were deeper than the JFR stack depth.", truncated));
+        }
+
+        final List<LessIOViolation> sortedViolations = getViolations();
+        if (sortedViolations.isEmpty()) {
+            out.println("LessIO observed no violations.");
+            return;
+        }
+
+        sortedViolations.sort(Comparator.comparing(LessIOViolation::getTestClassName, Comparator.nullsLast(Comparator.naturalOrder())));
+        out.println(format("LessIO observed %d violations:", sortedViolations.size()));
+        for (final LessIOViolation violation : sortedViolations) {
+            out.println(format("  %s", violation));
+        }
+    }
+
+    private void observe(final RecordedEvent event)
+    {
+        final String eventName = event.getEventType().getName();
+        if (eventName.equals(Flush.NAME)) {
+            flushed.countDown();
+            return;
+        }
+
+        final RecordedStackTrace stackTrace = event.getStackTrace();
+        final LessIOOperation operation = toOperation(eventName, event);
+        if (stackTrace == null || operation == null) {
+            return;
+        }
+
+        // A class in the missing frames could allow the operation.
+        if (stackTrace.isTruncated()) {
+            synchronized (this) {
+                truncatedCount++;
+            }
+            return;
+        }
+
+        final Class<?>[] stack = resolve(stackTrace);
+        try {
+            engine.check(operation, LessIOStackSource.of(stack));
+        }
+        catch (final LessIOException e) {
+            record(findTestClassName(stack), operation, e.getMessage());
+        }
+        catch (final IllegalArgumentException e) {
+            // Not a valid file name, this can never be allowed or denied.
+            return;
+        }
+    }
+
+    private LessIOOperation toOperation(final String eventName, final RecordedEvent event)
+    {
+        switch (eventName) {
+            case FILE_READ:
+            case FILE_WRITE:
+                // No path for streams on a file descriptor.
+                final String path = event.getString("path");
+                if (path == null) {
+                    return null;
+                }
+                return eventName.equals(FILE_READ) ? LessIOOperation.read(path) : LessIOOperation.write(path);
+            case SOCKET_READ:
+            case SOCKET_WRITE:
+                // Like the security manager checks, prefer the address over the host name.
+                final String address = event.getString("address");
+                final String host = address == null || address.isEmpty() ? event.getString("host") : address;
+                if (host == null) {
+                    return null;
+                }
+                // The remote end of an accepted socket is a client, which usually has an ephemeral port.
+                final int port = event.getInt("port");
+                return engine.isEphemeralPort(port) ? LessIOOperation.accept(host, port) : LessIOOperation.connect(host, port);
+            case PROCESS_START:
+                // The event only has the whole command line, assume that the program name has no spaces.
+                final String command = event.getString("command");
+                if (command == null || command.isEmpty()) {
+                    return null;
+                }
+                final int end = command.indexOf(' ');
+                return LessIOOperation.exec(end < 0 ? command : command.substring(0, end));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The classes on the recorded stack, innermost first. Classes that can not be loaded (e.g. lambdas or
+     * classes from other class loaders) are left out.
+     */
+    private Class<?>[] resolve(final RecordedStackTrace stackTrace)
+    {
+        final List<RecordedFrame> frames = stackTrace.getFrames();
+        final List<Class<?>> stack = new ArrayList<>(frames.size());
+        for (final RecordedFrame frame : frames) {
+            if (!frame.isJavaFrame()) {
+                continue;
+            }
+
+            final String className = frame.getMethod().getType().getName();
+            Class<?> clazz = classes.get(className);
+            if (clazz == null && !classes.containsKey(className)) {
+                try {
+                    clazz = Class.forName(className, false, classLoader);
+                }
+                catch (final ClassNotFoundException | LinkageError e) {
+                    clazz = null;
+                }
+                classes.put(className, clazz);
+            }
+
+            if (clazz != null) {
+                stack.add(clazz);
+            }
+        }
+        return stack.toArray(new Class<?>[0]);
+    }
+
+    /**
+     * The outermost non-JDK class below the test runner.
+     */
+    private String findTestClassName(final Class<?>[] stack)
+    {
+        String testClassName = null;
+        for (final Class<?> clazz : stack) {
+            if (engine.isTestrunnerClass(clazz)) {
+                break;
+            }
+
+            final ClassLoader loader = clazz.getClassLoader();
+            if (loader != null && loader != ClassLoader.getPlatformClassLoader()) {
+                testClassName = clazz.getName();
+            }
+        }
+        return testClassName;
+    }
+
+    private synchronized void record(final String testClassName, final LessIOOperation operation, final String message)
+    {
+        final String key = testClassName + '\0' + message;
+        final LessIOViolation violation = violations.get(key);
+        if (violation == null) {
+            violations.put(key, new LessIOViolation(testClassName, operation, message));
+        }
+        else {
+            violation.increment();
+        }
+    }
+
+    @Name(Flush.NAME)
+    @Label("LessIO Observer Flush")
+    @Enabled(false)
+    static final class Flush extends Event
+    {
+        static final String NAME = "org.kitei.lessio.ObserverFlush";
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.jfr;
+
+/**
+ * Observes a whole JVM run and reports the violations when the JVM exits. Use with
+ * <code>-javaagent:kitei-lessio-jfr.jar</code>, e.g. in the Surefire <code>argLine</code>.
+ *
+ * The default JFR stack depth of 64 frames rarely reaches the test runner. Unless the depth is given with
+ * <code>-XX:FlightRecorderOptions:stackdepth</code>, the agent sets it to the value of the
+ * <code>kitei.testing.jfr-stack-depth</code> system property (default 1024).
+ */
+public final class LessIOObserverAgent
+{
+    private static final int DEFAULT_STACK_DEPTH = 1024;
+
+    private LessIOObserverAgent()
+    {
+        throw new AssertionError("do not instantiate");
+    }
+
+    public static void premain(final String args)
+    {
+        LessIOObserver.setStackDepth(Integer.getInteger("kitei.testing.jfr-stack-depth", DEFAULT_STACK_DEPTH));
+
+        final LessIOObserver observer = LessIOObserver.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            observer.close();
+            observer.report(System.err);
+        }, "lessio-observer-report"));
+    }
+}
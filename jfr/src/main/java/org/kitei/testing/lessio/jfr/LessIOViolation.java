@@ -0,0 +1,72 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.jfr;
+
+import static java.lang.String.format;
+
+import org.kitei.testing.lessio.LessIOOperation;
+
+/**
+ * An operation that a test did without being allowed to. Repeated violations of the same test class
+ * for the same operation are counted, not reported one by one.
+ */
+public final class LessIOViolation
+{
+    private final String testClassName;
+    private final LessIOOperation operation;
+    private final String message;
+    private int count = 1;
+
+    LessIOViolation(final String testClassName, final LessIOOperation operation, final String message)
+    {
+        this.testClassName = testClassName;
+        this.operation = operation;
+        this.message = message;
+    }
+
+    /**
+     * The outermost class on the stack below the test runner, usually the test class. Null if no such class
+     * could be found.
+     */
+    public String getTestClassName()
+    {
+        return testClassName;
+    }
+
+    public LessIOOperation getOperation()
+    {
+        return operation;
+    }
+
+    public String getMessage()
+    {
+        return message;
+    }
+
+    public int getCount()
+    {
+        return count;
+    }
+
+    void increment()
+    {
+        count++;
+    }
+
+    @Override
+    public String toString()
+    {
+        return format("%s: %s (%dx)", testClassName, message, count);
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kitei.testing.lessio.AllowTmpDirAccess;
+import org.kitei.testing.lessio.LessIOEngine;
+import org.kitei.testing.lessio.LessIOOperation;
+import org.kitei.testing.lessio.LessIOTestThreads;
+
+public class LessIOObserverTest
+{
+    // Above the largest JFR stack depth.
+    private static final int TRUNCATED_DEPTH = 2100;
+
+    private interface Operation
+    {
+        void run() throws IOException;
+    }
+
+    @AllowTmpDirAccess
+    private static class AllowedWriter
+    {
+        static void write(final File file) throws IOException
+        {
+            LessIOObserverTest.write(file);
+        }
+    }
+
+    private final LessIOEngine engine = LessIOEngine.create();
+    private File tmpFile;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        tmpFile = File.createTempFile("lessio-observer", ".tmp");
+    }
+
+    @After
+    public void tearDown()
+    {
+        tmpFile.delete();
+    }
+
+    private static void write(final File file) throws IOException
+    {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(1);
+        }
+    }
+
+    private static void writeAtDepth(final File file, final int depth) throws IOException
+    {
+        if (depth == 0) {
+            write(file);
+        }
+        else {
+            writeAtDepth(file, depth - 1);
+        }
+    }
+
+    private LessIOObserver observe(final Operation operation) throws IOException
+    {
+        final LessIOObserver observer = LessIOObserver.start(engine, getClass().getClassLoader());
+        try {
+            operation.run();
+        }
+        finally {
+            observer.close();
+        }
+        return observer;
+    }
+
+    /**
+     * The violations for one resource, the JVM may do other IO while it is observed.
+     */
+    private static List<LessIOViolation> violationsFor(final LessIOObserver observer, final String name)
+    {
+        final List<LessIOViolation> violations = new ArrayList<>();
+        for (final LessIOViolation violation : observer.getViolations()) {
+            if (name.equals(violation.getOperation().getName())) {
+                violations.add(violation);
+            }
+        }
+        return violations;
+    }
+
+    @Test
+    public void testViolationIsObserved() throws IOException
+    {
+        final List<LessIOViolation> violations = violationsFor(observe(() -> write(tmpFile)), tmpFile.getPath());
+        assertEquals(1, violations.size());
+        assertEquals(LessIOObserverTest.class.getName(), violations.get(0).getTestClassName());
+        assertEquals(LessIOOperation.Type.WRITE, violations.get(0).getOperation().getType());
+    }
+
+    @Test
+    public void testRepeatedViolationIsCounted() throws IOException
+    {
+        final List<LessIOViolation> violations = violationsFor(observe(() -> {
+            write(tmpFile);
+            write(tmpFile);
+        }), tmpFile.getPath());
+        assertEquals(1, violations.size());
+        assertEquals(2, violations.get(0).getCount());
+    }
+
+    @Test
+    public void testAllowedOperationIsNotReported() throws IOException
+    {
+        assertTrue(violationsFor(observe(() -> AllowedWriter.write(tmpFile)), tmpFile.getPath()).isEmpty());
+    }
+
+    @Test
+    public void testViolationIsObservedOnMarkedThread() throws IOException
+    {
+        // Like a listener, mark the test thread once the observer runs (e.g. started by the agent).
+        // The observer checks on its own thread, which no listener marks.
+        final LessIOObserver observer = observe(() -> {
+            LessIOTestThreads.enter(LessIOObserverTest.class);
+            try {
+                write(tmpFile);
+            }
+            finally {
+                LessIOTestThreads.exit();
+            }
+        });
+        assertEquals(1, violationsFor(observer, tmpFile.getPath()).size());
+    }
+
+    @Test
+    public void testTruncatedStackIsCounted() throws IOException
+    {
+        final LessIOObserver observer = observe(() -> writeAtDepth(tmpFile, TRUNCATED_DEPTH));
+        assertTrue(violationsFor(observer, tmpFile.getPath()).isEmpty());
+        assertTrue(observer.getTruncatedCount() > 0);
+
+        final ByteArrayOutputStream report = new ByteArrayOutputStream();
+        observer.report(new PrintStream(report, true));
+        assertTrue(report.toString(), report.toString().contains("deeper than the JFR stack depth"));
+    }
+
+    @Test
+    public void testSocketTraffic() throws IOException
+    {
+        final InetAddress loopback = InetAddress.getLoopbackAddress();
+        final ServerSocket server = bindBelowEphemeralPorts(loopback);
+        assumeNotNull(server);
+
+        final LessIOObserver observer;
+        try {
+            observer = observe(() -> {
+                try (Socket client = new Socket(loopback, server.getLocalPort());
+                     Socket accepted = server.accept()) {
+                    client.getOutputStream().write(1);
+                    accepted.getInputStream().read();
+                }
+            });
+        }
+        finally {
+            server.close();
+        }
+
+        LessIOViolation connect = null;
+        LessIOViolation accept = null;
+        for (final LessIOViolation violation : violationsFor(observer, loopback.getHostAddress())) {
+            final LessIOOperation operation = violation.getOperation();
+            if (operation.getType() == LessIOOperation.Type.CONNECT) {
+                connect = violation;
+            }
+            else if (operation.getType() == LessIOOperation.Type.ACCEPT) {
+                accept = violation;
+            }
+        }
+
+        // The client writes to the server port, the accepted socket reads from the client's ephemeral port.
+        assertNotNull(connect);
+        assertEquals(server.getLocalPort(), connect.getOperation().getPort());
+        assertNotNull(accept);
+        assertTrue(engine.isEphemeralPort(accept.getOperation().getPort()));
+    }
+
+    /**
+     * A server on a port that is not ephemeral, like a real service. Null if no such port is free.
+     */
+    private ServerSocket bindBelowEphemeralPorts(final InetAddress address)
+    {
+        for (int port = 20000; port < 20100; port++) {
+            if (engine.isEphemeralPort(port)) {
+                return null;
+            }
+            try {
+                return new ServerSocket(port, 1, address);
+            }
+            catch (final IOException e) {
+                // in use, try the next port.
+                continue;
+            }
+        }
+        return null;
+    }
+}
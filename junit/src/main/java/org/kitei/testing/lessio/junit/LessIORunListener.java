@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.junit;
+
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.RunListener;
+import org.kitei.testing.lessio.LessIOTestThreads;
+
+/**
+ * Marks the threads that run tests, see {@link LessIOTestThreads}. Checks on all other threads return
+ * without walking the stack. With Surefire:
+ *
+ * <pre>
+ * &lt;properties&gt;
+ *   &lt;property&gt;
+ *     &lt;name&gt;listener&lt;/name&gt;
+ *     &lt;value&gt;org.kitei.testing.lessio.junit.LessIORunListener&lt;/value&gt;
+ *   &lt;/property&gt;
+ * &lt;/properties&gt;
+ * </pre>
+ *
+ * The thread that starts the run stays marked until the run finishes, so that class level fixtures are
+ * still checked. Tests on other threads (e.g. with a parallel computer) are marked while they run.
+ *
+ * While a test runs, its test class is bound to the thread. The Allow* annotations of the test class
+ * are resolved once and allow an operation without walking the stack.
+ */
+public class LessIORunListener extends RunListener
+{
+    @Override
+    public void testRunStarted(final Description description)
+    {
+        // Every test of the run is reported to this listener.
+        LessIOTestThreads.markAllTests();
+        LessIOTestThreads.enter();
+    }
+
+    @Override
+    public void testRunFinished(final Result result)
+    {
+        LessIOTestThreads.exit();
+    }
+
+    @Override
+    public void testStarted(final Description description)
+    {
+        LessIOTestThreads.enter(description.getTestClass());
+    }
+
+    @Override
+    public void testFinished(final Description description)
+    {
+        LessIOTestThreads.exit();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.junit;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runners.model.Statement;
+import org.kitei.testing.lessio.LessIOException;
+import org.kitei.testing.lessio.LessIOSecurityManager;
+
+/**
+ * Needs the {@link LessIORunListener}, which is configured for the tests of this module.
+ */
+public class LessIORunListenerTest
+{
+    // A test runner class on the stack, like in a real test.
+    protected class ExecStatement extends Statement
+    {
+        @Override
+        public void evaluate()
+        {
+            sm.checkExec("/usr/bin/whoami");
+        }
+    }
+
+    LessIOSecurityManager sm;
+
+    @Before
+    public void setupSecurityManager()
+    {
+        sm = new LessIOSecurityManager();
+    }
+
+    @Test(expected = LessIOException.class)
+    public void testTestThreadIsChecked()
+    {
+        new ExecStatement().evaluate();
+    }
+
+    @Test(expected = LessIOException.class, timeout = 60000)
+    public void testTimeoutThreadIsChecked()
+    {
+        new ExecStatement().evaluate();
+    }
+
+    @Test
+    public void testThreadStartedByTestIsChecked() throws Exception
+    {
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run()
+            {
+                try {
+                    new ExecStatement().evaluate();
+                }
+                catch (final Throwable t) {
+                    failure.set(t);
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertTrue("check on a thread started by the test was skipped", failure.get() instanceof LessIOException);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.junit5;
+
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.kitei.testing.lessio.LessIOTestThreads;
+
+/**
+ * Binds the test class to the thread that runs its tests and fixtures, see {@link LessIOTestThreads}. The
+ * Allow* annotations of the test class are resolved once and allow an operation without walking the stack.
+ * Checks on all other threads still walk the stack, the extension may not see every test of the JVM (e.g.
+ * JUnit 4 tests on the vintage engine).
+ *
+ * JUnit 5 has no test runner classes that LessIO knows about, so without this extension no operation in a
+ * JUnit 5 test is checked. Register it with <code>@ExtendWith(LessIOExtension.class)</code> or for all tests
+ * with <code>junit.jupiter.extensions.autodetection.enabled=true</code>.
+ */
+public class LessIOExtension implements BeforeAllCallback, AfterAllCallback, BeforeEachCallback, AfterEachCallback
+{
+    @Override
+    public void beforeAll(final ExtensionContext context)
+    {
+        LessIOTestThreads.enter(context.getRequiredTestClass());
+    }
+
+    @Override
+    public void afterAll(final ExtensionContext context)
+    {
+        LessIOTestThreads.exit();
+    }
+
+    @Override
+    public void beforeEach(final ExtensionContext context)
+    {
+        LessIOTestThreads.enter(context.getRequiredTestClass());
+    }
+
+    @Override
+    public void afterEach(final ExtensionContext context)
+    {
+        LessIOTestThreads.exit();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.junit5;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.platform.testkit.engine.EngineExecutionResults;
+import org.junit.platform.testkit.engine.EngineTestKit;
+import org.kitei.testing.lessio.AllowAll;
+import org.kitei.testing.lessio.AllowExternalProcess;
+import org.kitei.testing.lessio.LessIOException;
+import org.kitei.testing.lessio.LessIOSecurityManager;
+
+/**
+ * Runs the nested test classes through the Jupiter engine with the {@link LessIOExtension}. They are not
+ * picked up on their own, the checks only pass with the extension in place.
+ */
+public class LessIOExtensionTest
+{
+    private static final LessIOSecurityManager SM = new LessIOSecurityManager();
+
+    private static final String CMD = "/usr/bin/whoami";
+
+    @ExtendWith(LessIOExtension.class)
+    @AllowExternalProcess
+    public static class ExecAllowed
+    {
+        @Test
+        public void testExec()
+        {
+            SM.checkExec(CMD);
+        }
+
+        @Test
+        public void testListenDenied()
+        {
+            assertThrows(LessIOException.class, () -> SM.checkListen(80));
+        }
+
+        @Nested
+        public class Inner
+        {
+            @Test
+            public void testExec()
+            {
+                SM.checkExec(CMD);
+            }
+        }
+    }
+
+    @ExtendWith(LessIOExtension.class)
+    public static class ExecDenied
+    {
+        @Test
+        public void testExec()
+        {
+            assertThrows(LessIOException.class, () -> SM.checkExec(CMD));
+        }
+
+        @Nested
+        @AllowExternalProcess
+        public class Inner
+        {
+            @Test
+            public void testExec()
+            {
+                SM.checkExec(CMD);
+            }
+        }
+    }
+
+    // @AllowAll only counts on a test runner class, JUnit 5 test classes are none.
+    @ExtendWith(LessIOExtension.class)
+    @AllowAll
+    public static class MisplacedAllowAll
+    {
+        @Test
+        public void testExec()
+        {
+            assertThrows(LessIOException.class, () -> SM.checkExec(CMD));
+        }
+    }
+
+    @ExtendWith(LessIOExtension.class)
+    @AllowExternalProcess
+    public static class RepeatedExecAllowed
+    {
+        @RepeatedTest(20)
+        public void testExec()
+        {
+            SM.checkExec(CMD);
+        }
+    }
+
+    @ExtendWith(LessIOExtension.class)
+    public static class RepeatedExecDenied
+    {
+        @RepeatedTest(20)
+        public void testExec()
+        {
+            assertThrows(LessIOException.class, () -> SM.checkExec(CMD));
+        }
+    }
+
+    @Test
+    public void testAllowed()
+    {
+        execute(false, ExecAllowed.class).testEvents().assertStatistics(stats -> stats.started(3).succeeded(3));
+    }
+
+    @Test
+    public void testDenied()
+    {
+        execute(false, ExecDenied.class).testEvents().assertStatistics(stats -> stats.started(2).succeeded(2));
+    }
+
+    @Test
+    public void testMisplacedAllowAll()
+    {
+        execute(false, MisplacedAllowAll.class).testEvents().assertStatistics(stats -> stats.started(1).succeeded(1));
+    }
+
+    @Test
+    public void testParallel()
+    {
+        // Each thread must see the test class of the test it runs right now.
+        execute(true, RepeatedExecAllowed.class, RepeatedExecDenied.class, ExecAllowed.class, ExecDenied.class)
+            .testEvents().assertStatistics(stats -> stats.started(45).succeeded(45));
+    }
+
+    private static EngineExecutionResults execute(final boolean parallel, final Class<?>... testClasses)
+    {
+        final EngineTestKit.Builder builder = EngineTestKit.engine("junit-jupiter");
+        for (final Class<?> testClass : testClasses) {
+            builder.selectors(selectClass(testClass));
+        }
+
+        if (parallel) {
+            builder.configurationParameter("junit.jupiter.execution.parallel.enabled", "true")
+                .configurationParameter("junit.jupiter.execution.parallel.mode.default", "concurrent")
+                .configurationParameter("junit.jupiter.execution.parallel.mode.classes.default", "concurrent")
+                .configurationParameter("junit.jupiter.execution.parallel.config.strategy", "fixed")
+                .configurationParameter("junit.jupiter.execution.parallel.config.fixed.parallelism", "4");
+        }
+        return builder.execute();
+    }
+}
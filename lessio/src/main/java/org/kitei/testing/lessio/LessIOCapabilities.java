@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The capabilities of a class folded into a single bitmask: the Allow* annotations from its
+ * {@link LessIOClassProfile} and whether it is a whitelisted or a testrunner class for an engine.
+ * A stack walk looks up one mask per class and most predicates decide on the mask alone, only paths,
+ * endpoints and ports need the compiled rules.
+ *
+ * The masks are computed once per class and engine and attached to the class through a {@link ClassValue}.
+ * The classification of a class as whitelisted or testrunner class is only looked up through its mask.
+ */
+final class LessIOCapabilities
+{
+    static final long ALLOW_ALL = 1L;
+    static final long DNS_RESOLUTION = 1L << 1;
+    static final long EXTERNAL_PROCESS = 1L << 2;
+    static final long FILE_DESCRIPTOR_IO = 1L << 3;
+    static final long LOCAL_FILE_ACCESS = 1L << 4;
+    static final long NETWORK_ACCESS = 1L << 5;
+    static final long NETWORK_LISTEN = 1L << 6;
+    static final long NETWORK_MULTICAST = 1L << 7;
+    static final long TMP_DIR_ACCESS = 1L << 8;
+    // %FD% in the paths of @AllowLocalFileAccess, deprecated.
+    static final long LOCAL_FILE_DESCRIPTORS = 1L << 9;
+
+    // Every class has this, a predicate that does not depend on the class grants or requires it.
+    static final long ANY_CLASS = 1L << 61;
+    static final long TESTRUNNER = 1L << 62;
+    static final long WHITELISTED = 1L << 63;
+
+    private final LessIOClassCache whitelistCache;
+    private final LessIOClassCache testrunnerCache;
+
+    // Lookups are only counted with statistics, every frame of a stack walk is one lookup.
+    private final LongAdder lookupCount;
+    private final LongAdder computeCount = new LongAdder();
+
+    private final ClassValue<Long> capabilities = new ClassValue<Long>() {
+        @Override
+        protected Long computeValue(final Class<?> type)
+        {
+            computeCount.increment();
+            long mask = LessIOClassProfile.forClass(type).getCapabilities() | ANY_CLASS;
+            if (whitelistCache.matches(type)) {
+                mask |= WHITELISTED;
+            }
+            if (testrunnerCache.matches(type)) {
+                mask |= TESTRUNNER;
+            }
+            return mask;
+        }
+    };
+
+    LessIOCapabilities(final LessIOClassCache whitelistCache, final LessIOClassCache testrunnerCache, final boolean countLookups)
+    {
+        this.whitelistCache = whitelistCache;
+        this.testrunnerCache = testrunnerCache;
+        this.lookupCount = countLookups ? new LongAdder() : null;
+    }
+
+    long of(final Class<?> clazz)
+    {
+        if (lookupCount != null) {
+            lookupCount.increment();
+        }
+        return capabilities.get(clazz);
+    }
+
+    /**
+     * The number of masks looked up, 0 if lookups are not counted.
+     */
+    long getLookupCount()
+    {
+        return lookupCount == null ? 0 : lookupCount.sum();
+    }
+
+    /**
+     * The number of masks that have been computed, including those of classes that have been unloaded since.
+     */
+    long getComputeCount()
+    {
+        return computeCount.sum();
+    }
+
+    /**
+     * True if the predicate allows the operation for a class with these capabilities. The predicate itself is
+     * only asked if the class has one of the capabilities that it requires.
+     */
+    static boolean isAllowed(final LessIOPredicate predicate, final Class<?> clazz, final long capabilities)
+        throws Exception
+    {
+        if ((capabilities & predicate.getGrantingCapabilities()) != 0) {
+            return true;
+        }
+        return (capabilities & predicate.getRequiredCapabilities()) != 0 && predicate.check(clazz);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for each check of a {@link LessIOEngine}. The event is disabled by default, enable it with
+ * e.g. <code>-XX:StartFlightRecording:settings=profile,+org.kitei.lessio.Check#enabled=true</code> or in JMC.
+ * While it is disabled, no event objects are created.
+ */
+@Name("org.kitei.lessio.Check")
+@Label("LessIO Check")
+@Category("LessIO")
+@Description("A LessIO check and its outcome")
+@Enabled(false)
+@StackTrace(false)
+final class LessIOCheckEvent extends Event
+{
+    // Only used to find out whether the event is enabled.
+    private static final LessIOCheckEvent PROBE = new LessIOCheckEvent();
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Resource")
+    @Description("The file, host or command, if any")
+    String resource;
+
+    @Label("Port")
+    int port;
+
+    @Label("Allowed")
+    boolean allowed;
+
+    @Label("Deciding Class")
+    @Description("The class whose permissions allowed the operation")
+    Class<?> decidingClass;
+
+    @Label("Stack Depth")
+    @Description("The number of classes inspected on the stack")
+    int stackDepth;
+
+    @Label("Cache Hit")
+    @Description("Decided from the path whitelist cache")
+    boolean cacheHit;
+
+    static boolean isEventEnabled()
+    {
+        return PROBE.isEnabled();
+    }
+
+    /**
+     * @return an event that has begun, null if the event is disabled.
+     */
+    static LessIOCheckEvent beginIfEnabled(final LessIOOperation.Type operation, final Object resource, final int port)
+    {
+        if (!isEventEnabled()) {
+            return null;
+        }
+
+        final LessIOCheckEvent event = new LessIOCheckEvent();
+        event.operation = operation.name();
+        event.resource = resource == null ? null : resource.toString();
+        event.port = port;
+        event.begin();
+        return event;
+    }
+
+    void end(final boolean allowed)
+    {
+        end();
+        if (shouldCommit()) {
+            this.allowed = allowed;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static java.util.Collections.newSetFromMap;
+import static java.util.Collections.unmodifiableSet;
+
+import static org.kitei.testing.lessio.LessIOUtils.checkNotNull;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Determines whether a class, an interface implemented by that class, any enclosing class or
+ * any superclass is one of a fixed set of seed classes.
+ *
+ * The result for each class is stored in a {@link ClassValue}, so lookups do not take any lock and
+ * the cached results go away together with the classes.
+ */
+final class LessIOClassCache
+{
+    private final Set<Class<?>> seedClasses;
+
+    private final LongAdder computeCount = new LongAdder();
+
+    private final ClassValue<Boolean> matches = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(final Class<?> type)
+        {
+            computeCount.increment();
+            return computeMatch(type);
+        }
+    };
+
+    LessIOClassCache(final Collection<Class<?>> seedClasses)
+    {
+        checkNotNull(seedClasses, "seedClasses is null");
+
+        final Set<Class<?>> classes = newSetFromMap(new IdentityHashMap<Class<?>, Boolean>());
+        classes.addAll(seedClasses);
+        this.seedClasses = unmodifiableSet(classes);
+    }
+
+    boolean matches(final Class<?> clazz)
+    {
+        return matches.get(clazz);
+    }
+
+    /**
+     * The number of classes (including enclosing classes, interfaces and superclasses) that have been classified.
+     */
+    long getComputeCount()
+    {
+        return computeCount.sum();
+    }
+
+    private boolean computeMatch(final Class<?> clazz)
+    {
+        if (seedClasses.contains(clazz)) {
+            return true;
+        }
+
+        // Check enclosing classes for the current class first. The
+        // result for the enclosing class covers its own enclosing classes.
+        // Generated classes use their host instead, e.g. a lambda in a testrunner class.
+        final Class<?> outerClass = LessIOGeneratedClasses.getOuterClass(clazz);
+        if (outerClass != null && matches(outerClass)) {
+            return true;
+        }
+
+        // Also look at the interfaces that a class implements.
+        // Some of the test runner classes (e.g. TestRule) are actual interfaces.
+        for (final Class<?> interfaceClass : clazz.getInterfaces()) {
+            if (matches(interfaceClass)) {
+                return true;
+            }
+        }
+
+        final Class<?> superClass = clazz.getSuperclass();
+        return superClass != null && matches(superClass);
+    }
+}
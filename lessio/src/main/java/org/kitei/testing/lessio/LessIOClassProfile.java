@@ -0,0 +1,300 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static org.kitei.testing.lessio.LessIOUtils.checkNotNull;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * The capabilities granted to a class by the Allow* annotations. An annotation applies to a class
+ * if it is present on the class itself, on any enclosing class, on any implemented interface or on
+ * any superclass (in that order). Generated classes use their host instead of an enclosing class,
+ * see {@link LessIOGeneratedClasses}.
+ *
+ * Profiles are computed once per class and attached to the class through a {@link ClassValue}, so they
+ * go away together with the class and its class loader.
+ */
+final class LessIOClassProfile
+{
+    private static final ClassValue<LessIOClassProfile> PROFILES = new ClassValue<LessIOClassProfile>() {
+        @Override
+        protected LessIOClassProfile computeValue(final Class<?> type)
+        {
+            return new LessIOClassProfile(type);
+        }
+    };
+
+    private final AllowAll allowAll;
+    private final AllowDNSResolution allowDNSResolution;
+    private final AllowExternalProcess allowExternalProcess;
+    private final AllowFileDescriptorIO allowFileDescriptorIO;
+    private final AllowLocalFileAccess allowLocalFileAccess;
+    private final AllowNetworkAccess allowNetworkAccess;
+    private final AllowNetworkListen allowNetworkListen;
+    private final AllowNetworkMulticast allowNetworkMulticast;
+    private final AllowTmpDirAccess allowTmpDirAccess;
+
+    private final LessIOPathRules localFileAccessRules;
+    private final LessIOEndpointRules networkAccessRules;
+    private final LessIOPorts networkListenPorts;
+
+    private final long capabilities;
+
+    static LessIOClassProfile forClass(final Class<?> clazz)
+    {
+        checkNotNull(clazz, "clazz is null");
+        return PROFILES.get(clazz);
+    }
+
+    private LessIOClassProfile(final Class<?> clazz)
+    {
+        final Hierarchy hierarchy = new Hierarchy(clazz);
+
+        this.allowAll = hierarchy.resolve(AllowAll.class);
+        this.allowDNSResolution = hierarchy.resolve(AllowDNSResolution.class);
+        this.allowExternalProcess = hierarchy.resolve(AllowExternalProcess.class);
+        this.allowFileDescriptorIO = hierarchy.resolve(AllowFileDescriptorIO.class);
+        this.allowLocalFileAccess = hierarchy.resolve(AllowLocalFileAccess.class);
+        this.allowNetworkAccess = hierarchy.resolve(AllowNetworkAccess.class);
+        this.allowNetworkListen = hierarchy.resolve(AllowNetworkListen.class);
+        this.allowNetworkMulticast = hierarchy.resolve(AllowNetworkMulticast.class);
+        this.allowTmpDirAccess = hierarchy.resolve(AllowTmpDirAccess.class);
+
+        if (allowLocalFileAccess == null) {
+            this.localFileAccessRules = null;
+        }
+        else {
+            final LessIOClassProfile source = hierarchy.inheritedFrom(allowLocalFileAccess);
+            this.localFileAccessRules = source == null ? LessIOPathRules.compile(allowLocalFileAccess) : source.localFileAccessRules;
+        }
+
+        if (allowNetworkAccess == null) {
+            this.networkAccessRules = null;
+        }
+        else {
+            final LessIOClassProfile source = hierarchy.inheritedFrom(allowNetworkAccess);
+            this.networkAccessRules = source == null ? LessIOEndpointRules.compile(allowNetworkAccess) : source.networkAccessRules;
+        }
+
+        if (allowNetworkListen == null) {
+            this.networkListenPorts = null;
+        }
+        else {
+            final LessIOClassProfile source = hierarchy.inheritedFrom(allowNetworkListen);
+            this.networkListenPorts = source == null ? LessIOPorts.compile(allowNetworkListen) : source.networkListenPorts;
+        }
+
+        this.capabilities = computeCapabilities();
+    }
+
+    private long computeCapabilities()
+    {
+        long mask = 0L;
+        mask |= allowAll != null ? LessIOCapabilities.ALLOW_ALL : 0L;
+        mask |= allowDNSResolution != null ? LessIOCapabilities.DNS_RESOLUTION : 0L;
+        mask |= allowExternalProcess != null ? LessIOCapabilities.EXTERNAL_PROCESS : 0L;
+        mask |= allowFileDescriptorIO != null ? LessIOCapabilities.FILE_DESCRIPTOR_IO : 0L;
+        mask |= allowLocalFileAccess != null ? LessIOCapabilities.LOCAL_FILE_ACCESS : 0L;
+        mask |= allowNetworkAccess != null ? LessIOCapabilities.NETWORK_ACCESS : 0L;
+        mask |= allowNetworkListen != null ? LessIOCapabilities.NETWORK_LISTEN : 0L;
+        mask |= allowNetworkMulticast != null ? LessIOCapabilities.NETWORK_MULTICAST : 0L;
+        mask |= allowTmpDirAccess != null ? LessIOCapabilities.TMP_DIR_ACCESS : 0L;
+        mask |= localFileAccessRules != null && localFileAccessRules.isAllowFileDescriptors() ? LessIOCapabilities.LOCAL_FILE_DESCRIPTORS : 0L;
+        return mask;
+    }
+
+    /**
+     * The Allow* annotations of this class as {@link LessIOCapabilities}.
+     */
+    long getCapabilities()
+    {
+        return capabilities;
+    }
+
+    boolean isAllowAll()
+    {
+        return allowAll != null;
+    }
+
+    boolean isAllowDNSResolution()
+    {
+        return allowDNSResolution != null;
+    }
+
+    boolean isAllowExternalProcess()
+    {
+        return allowExternalProcess != null;
+    }
+
+    boolean isAllowFileDescriptorIO()
+    {
+        return allowFileDescriptorIO != null;
+    }
+
+    boolean isAllowNetworkAccess()
+    {
+        return allowNetworkAccess != null;
+    }
+
+    boolean isAllowNetworkListen()
+    {
+        return allowNetworkListen != null;
+    }
+
+    boolean isAllowNetworkMulticast()
+    {
+        return allowNetworkMulticast != null;
+    }
+
+    boolean isAllowTmpDirAccess()
+    {
+        return allowTmpDirAccess != null;
+    }
+
+    /**
+     * The compiled paths of the {@link AllowLocalFileAccess} annotation, null if there is none.
+     */
+    LessIOPathRules getLocalFileAccessRules()
+    {
+        return localFileAccessRules;
+    }
+
+    /**
+     * The parsed endpoints of the {@link AllowNetworkAccess} annotation, null if there is none.
+     */
+    LessIOEndpointRules getNetworkAccessRules()
+    {
+        return networkAccessRules;
+    }
+
+    /**
+     * The ports of the {@link AllowNetworkListen} annotation, null if there is none.
+     */
+    LessIOPorts getNetworkListenPorts()
+    {
+        return networkListenPorts;
+    }
+
+    /**
+     * The classes that an annotation can be inherited from, looked up once per profile.
+     */
+    private static final class Hierarchy
+    {
+        private final Class<?> clazz;
+        private final boolean generated;
+        private final Class<?> outerClass;
+        private final Class<?>[] interfaces;
+        private final Class<?> superClass;
+
+        private Hierarchy(final Class<?> clazz)
+        {
+            this.clazz = clazz;
+            this.generated = LessIOGeneratedClasses.isGenerated(clazz);
+            this.outerClass = LessIOGeneratedClasses.getOuterClass(clazz);
+            this.interfaces = clazz.getInterfaces();
+            this.superClass = clazz.getSuperclass();
+        }
+
+        /**
+         * Resolves an annotation for a class. Enclosing classes, interfaces and the superclass
+         * are resolved through their own (cached) profiles, so every class in the hierarchy is
+         * only ever inspected once.
+         */
+        private <T extends Annotation> T resolve(final Class<T> annotation)
+        {
+            final T a = generated ? null : clazz.getAnnotation(annotation);
+            if (a != null) {
+                return a;
+            }
+
+            if (outerClass != null) {
+                final T outerAnnotation = forClass(outerClass).get(annotation);
+                if (outerAnnotation != null) {
+                    return outerAnnotation;
+                }
+            }
+
+            for (final Class<?> interfaceClass : interfaces) {
+                final T interfaceAnnotation = forClass(interfaceClass).get(annotation);
+                if (interfaceAnnotation != null) {
+                    return interfaceAnnotation;
+                }
+            }
+
+            return superClass == null ? null : forClass(superClass).get(annotation);
+        }
+
+        /**
+         * Returns the profile of the enclosing class, interface or superclass that provided an inherited
+         * annotation, or null if the annotation is declared on the class itself. Compiled rules are shared
+         * with that profile, so they are built once per declaring class.
+         */
+        private LessIOClassProfile inheritedFrom(final Annotation annotation)
+        {
+            final Class<? extends Annotation> annotationType = annotation.annotationType();
+            if (!generated && clazz.getAnnotation(annotationType) == annotation) {
+                return null;
+            }
+
+            if (outerClass != null && forClass(outerClass).get(annotationType) == annotation) {
+                return forClass(outerClass);
+            }
+
+            for (final Class<?> interfaceClass : interfaces) {
+                if (forClass(interfaceClass).get(annotationType) == annotation) {
+                    return forClass(interfaceClass);
+                }
+            }
+
+            return forClass(superClass);
+        }
+    }
+
+    private <T extends Annotation> T get(final Class<T> annotation)
+    {
+        final Annotation a;
+        if (annotation == AllowAll.class) {
+            a = allowAll;
+        }
+        else if (annotation == AllowDNSResolution.class) {
+            a = allowDNSResolution;
+        }
+        else if (annotation == AllowExternalProcess.class) {
+            a = allowExternalProcess;
+        }
+        else if (annotation == AllowFileDescriptorIO.class) {
+            a = allowFileDescriptorIO;
+        }
+        else if (annotation == AllowLocalFileAccess.class) {
+            a = allowLocalFileAccess;
+        }
+        else if (annotation == AllowNetworkAccess.class) {
+            a = allowNetworkAccess;
+        }
+        else if (annotation == AllowNetworkListen.class) {
+            a = allowNetworkListen;
+        }
+        else if (annotation == AllowNetworkMulticast.class) {
+            a = allowNetworkMulticast;
+        }
+        else if (annotation == AllowTmpDirAccess.class) {
+            a = allowTmpDirAccess;
+        }
+        else {
+            throw new IllegalArgumentException("Unknown annotation " + annotation.getName());
+        }
+        return annotation.cast(a);
+    }
+}
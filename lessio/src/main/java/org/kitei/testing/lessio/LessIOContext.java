@@ -13,6 +13,7 @@
  */
 package org.kitei.testing.lessio;
 
+import static java.lang.String.format;
 import static java.util.Collections.newSetFromMap;
 
 import static org.kitei.testing.lessio.LessIOUtils.checkValidPort;
@@ -27,17 +28,25 @@ import java.util.Set;
 
 final class LessIOContext
 {
+    static final int DEFAULT_PATH_CACHE_SIZE = 16384;
+    static final int DEFAULT_DECISION_CACHE_SIZE = 4096;
+
     private final Set<Class<?>> testrunnerClasses;
 
     private final Set<Class<?>> whitelistedClasses;
     private final Set<String> whitelistedHosts;
+    private final LessIOLocalHosts localHosts;
     private final Set<Path> whitelistedPaths;
 
     private final Set<PathMatcher> whitelistedPathGlobs;
+    private final Set<String> whitelistedPathGlobPatterns;
 
     private final int lowestEphemeralPort;
     private final int highestEphemeralPort;
 
+    private final int pathCacheSize;
+    private final int decisionCacheSize;
+
     public static Builder builder()
     {
         return new Builder();
@@ -46,18 +55,26 @@ final class LessIOContext
     private LessIOContext(final Set<Class<?>> testrunnerClasses,
                           final Set<Class<?>> whitelistedClasses,
                           final Set<String> whitelistedHosts,
+                          final LessIOLocalHosts localHosts,
                           final Set<Path> whitelistedPaths,
                           final Set<PathMatcher> whitelistedPathGlobs,
+                          final Set<String> whitelistedPathGlobPatterns,
                           final int lowestEphemeralPort,
-                          final int highestEphemeralPort)
+                          final int highestEphemeralPort,
+                          final int pathCacheSize,
+                          final int decisionCacheSize)
     {
         this.testrunnerClasses = testrunnerClasses;
         this.whitelistedClasses = whitelistedClasses;
         this.whitelistedHosts = whitelistedHosts;
+        this.localHosts = localHosts;
         this.whitelistedPaths = whitelistedPaths;
         this.whitelistedPathGlobs = whitelistedPathGlobs;
+        this.whitelistedPathGlobPatterns = whitelistedPathGlobPatterns;
         this.lowestEphemeralPort = lowestEphemeralPort;
         this.highestEphemeralPort = highestEphemeralPort;
+        this.pathCacheSize = pathCacheSize;
+        this.decisionCacheSize = decisionCacheSize;
     }
 
     public Set<Class<?>> getTestrunnerClasses()
@@ -75,6 +92,14 @@ final class LessIOContext
         return whitelistedHosts;
     }
 
+    /**
+     * True if the host is whitelisted, either explicitly or as a name or address of the local host.
+     */
+    public boolean isWhitelistedHost(final String host)
+    {
+        return whitelistedHosts.contains(host) || (localHosts != null && localHosts.contains(host));
+    }
+
     public Set<Path> getWhitelistedPaths()
     {
         return whitelistedPaths;
@@ -85,6 +110,11 @@ final class LessIOContext
         return whitelistedPathGlobs;
     }
 
+    public Set<String> getWhitelistedPathGlobPatterns()
+    {
+        return whitelistedPathGlobPatterns;
+    }
+
     public int getLowestEphemeralPort()
     {
         return lowestEphemeralPort;
@@ -95,19 +125,34 @@ final class LessIOContext
         return highestEphemeralPort;
     }
 
+    public int getPathCacheSize()
+    {
+        return pathCacheSize;
+    }
+
+    public int getDecisionCacheSize()
+    {
+        return decisionCacheSize;
+    }
+
     public static final class Builder
     {
         private final Set<Class<?>> testrunnerClasses = newSetFromMap(new IdentityHashMap<Class<?>, Boolean>());
         private final Set<Class<?>> whitelistedClasses = newSetFromMap(new IdentityHashMap<Class<?>, Boolean>());
 
         private final Set<String> whitelistedHosts = new HashSet<>();
+        private boolean whitelistLocalHosts = false;
         private final Set<Path> whitelistedPaths = new HashSet<>();
 
         private final Set<PathMatcher> whitelistedPathGlobs = new HashSet<>();
+        private final Set<String> whitelistedPathGlobPatterns = new HashSet<>();
 
         private int lowestEphemeralPort = 0;
         private int highestEphemeralPort = 0;
 
+        private int pathCacheSize = DEFAULT_PATH_CACHE_SIZE;
+        private int decisionCacheSize = DEFAULT_DECISION_CACHE_SIZE;
+
         public Builder addTestrunnerClasses(final Collection<Class<?>> classes)
         {
             testrunnerClasses.addAll(classes);
@@ -136,6 +181,16 @@ final class LessIOContext
             return this;
         }
 
+        /**
+         * Whitelist all addresses of the local network interfaces and the local host name. The host name
+         * is resolved in the background and whitelisted once the lookup succeeds.
+         */
+        public Builder addWhitelistedLocalHosts()
+        {
+            this.whitelistLocalHosts = true;
+            return this;
+        }
+
         public Builder addWhitelistedPaths(final Path ... files)
         {
             whitelistedPaths.addAll(Arrays.asList(files));
@@ -148,6 +203,15 @@ final class LessIOContext
             return this;
         }
 
+        /**
+         * Add globs in the syntax of {@link java.nio.file.FileSystem#getPathMatcher(String)}, without the "glob:" prefix.
+         */
+        public Builder addWhitelistedPathGlobs(final String ... globs)
+        {
+            whitelistedPathGlobPatterns.addAll(Arrays.asList(globs));
+            return this;
+        }
+
         public Builder setLowestEphemeralPort(final int lowestEphemeralPort)
         {
             this.lowestEphemeralPort = checkValidPort(lowestEphemeralPort);
@@ -160,15 +224,37 @@ final class LessIOContext
             return this;
         }
 
+        public Builder setPathCacheSize(final int pathCacheSize)
+        {
+            if (pathCacheSize < 1) {
+                throw new IllegalArgumentException(format("%d is not a valid cache size", pathCacheSize));
+            }
+            this.pathCacheSize = pathCacheSize;
+            return this;
+        }
+
+        public Builder setDecisionCacheSize(final int decisionCacheSize)
+        {
+            if (decisionCacheSize < 1) {
+                throw new IllegalArgumentException(format("%d is not a valid cache size", decisionCacheSize));
+            }
+            this.decisionCacheSize = decisionCacheSize;
+            return this;
+        }
+
         public LessIOContext build()
         {
             return new LessIOContext(testrunnerClasses,
                                      whitelistedClasses,
                                      whitelistedHosts,
+                                     whitelistLocalHosts ? LessIOLocalHosts.resolve() : null,
                                      whitelistedPaths,
                                      whitelistedPathGlobs,
+                                     whitelistedPathGlobPatterns,
                                      lowestEphemeralPort,
-                                     highestEphemeralPort);
+                                     highestEphemeralPort,
+                                     pathCacheSize,
+                                     decisionCacheSize);
         }
     }
 }
@@ -0,0 +1,160 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static java.lang.String.format;
+
+import static org.kitei.testing.lessio.LessIOUtils.checkNotNull;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache for positive and negative decisions.
+ *
+ * Every decision is tied to a version object (e.g. the current classpath). A lookup or store with a
+ * different version than the cached one drops all cached decisions, so a decision computed against an
+ * outdated version is never returned. When the cache is full, an arbitrary eighth of the entries is evicted.
+ */
+final class LessIODecisionCache<K>
+{
+    private final int maximumSize;
+    private final int evictionBatchSize;
+
+    private final AtomicReference<Generation<K>> generation;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder invalidationCount = new LongAdder();
+
+    LessIODecisionCache(final int maximumSize)
+    {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException(format("%d is not a valid cache size", maximumSize));
+        }
+
+        this.maximumSize = maximumSize;
+        this.evictionBatchSize = Math.max(1, maximumSize / 8);
+        this.generation = new AtomicReference<>(new Generation<K>(null));
+    }
+
+    /**
+     * @return the cached decision or null if there is none for this key and version.
+     */
+    Boolean get(final K key, final Object version)
+    {
+        final Boolean result = currentGeneration(version).decisions.get(key);
+        if (result == null) {
+            missCount.increment();
+        }
+        else {
+            hitCount.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Like {@link #get(Object, Object)}, but does not count as a hit or miss.
+     */
+    boolean contains(final K key, final Object version)
+    {
+        final Generation<K> current = generation.get();
+        return current.version == version && current.decisions.containsKey(key);
+    }
+
+    void put(final K key, final Object version, final boolean decision)
+    {
+        checkNotNull(key, "key is null");
+
+        // A decision for an outdated version is dropped.
+        final Generation<K> current = generation.get();
+        if (current.version != version) {
+            return;
+        }
+
+        final ConcurrentMap<K, Boolean> decisions = current.decisions;
+
+        if (decisions.size() >= maximumSize) {
+            int evicted = 0;
+            for (final Iterator<K> it = decisions.keySet().iterator(); it.hasNext() && evicted < evictionBatchSize; evicted++) {
+                it.next();
+                it.remove();
+            }
+            evictionCount.add(evicted);
+        }
+
+        decisions.put(key, decision);
+    }
+
+    int size()
+    {
+        return generation.get().decisions.size();
+    }
+
+    int getMaximumSize()
+    {
+        return maximumSize;
+    }
+
+    long getHitCount()
+    {
+        return hitCount.sum();
+    }
+
+    long getMissCount()
+    {
+        return missCount.sum();
+    }
+
+    long getEvictionCount()
+    {
+        return evictionCount.sum();
+    }
+
+    long getInvalidationCount()
+    {
+        return invalidationCount.sum();
+    }
+
+    private Generation<K> currentGeneration(final Object version)
+    {
+        Generation<K> current = generation.get();
+        while (current.version != version) {
+            final Generation<K> next = new Generation<>(version);
+            if (generation.compareAndSet(current, next)) {
+                if (current.version != null) {
+                    invalidationCount.increment();
+                }
+                return next;
+            }
+            current = generation.get();
+        }
+        return current;
+    }
+
+    private static final class Generation<K>
+    {
+        private final Object version;
+        private final ConcurrentMap<K, Boolean> decisions = new ConcurrentHashMap<>();
+
+        private Generation(final Object version)
+        {
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The endpoints of an {@link AllowNetworkAccess} annotation, parsed into a host to port table.
+ * Matching an endpoint is a hash lookup for the host and a binary search for the port.
+ */
+final class LessIOEndpointRules
+{
+    private final LessIOPorts anyHost;
+    private final Map<String, LessIOPorts> hosts;
+
+    static LessIOEndpointRules compile(final AllowNetworkAccess annotation)
+    {
+        final String[] endpoints = annotation.endpoints();
+        return new LessIOEndpointRules(endpoints == null ? new String[0] : endpoints);
+    }
+
+    private LessIOEndpointRules(final String[] endpoints)
+    {
+        final Map<String, LessIOPorts.Builder> builders = new HashMap<>();
+        final LessIOPorts.Builder anyHostBuilder = new LessIOPorts.Builder();
+
+        for (final String endpoint : endpoints) {
+            final String[] parts = endpoint.split(":");
+
+            // Anything that is not [hostname]:[port] can never match.
+            if (parts.length != 2) {
+                continue;
+            }
+
+            LessIOPorts.Builder builder = anyHostBuilder;
+            if (!parts[0].equals("*")) {
+                builder = builders.get(parts[0]);
+                if (builder == null) {
+                    builder = new LessIOPorts.Builder();
+                    builders.put(parts[0], builder);
+                }
+            }
+
+            if (parts[1].equals("*")) {
+                builder.addAnyPort();
+            }
+            else {
+                final int port = parsePort(parts[1]);
+                if (port != -1) {
+                    builder.add(port);
+                }
+            }
+        }
+
+        final Map<String, LessIOPorts> hosts = new HashMap<>();
+        for (final Map.Entry<String, LessIOPorts.Builder> entry : builders.entrySet()) {
+            hosts.put(entry.getKey(), entry.getValue().build());
+        }
+
+        this.anyHost = anyHostBuilder.build();
+        this.hosts = hosts;
+    }
+
+    /**
+     * The port was always compared as a string, so only the plain decimal form of a port matches
+     * (e.g. not "08080" or "+80").
+     *
+     * @return the port or -1 if it can never match.
+     */
+    private static int parsePort(final String port)
+    {
+        try {
+            final int value = Integer.parseInt(port);
+            return value >= 0 && Integer.toString(value).equals(port) ? value : -1;
+        }
+        catch (final NumberFormatException nfe) {
+            return -1;
+        }
+    }
+
+    /**
+     * @param ephemeralPort true if the port is in the ephemeral port range of the current context.
+     */
+    boolean matches(final String host, final int port, final boolean ephemeralPort)
+    {
+        if (anyHost.matches(port, ephemeralPort)) {
+            return true;
+        }
+
+        final LessIOPorts ports = hosts.get(host);
+        return ports != null && ports.matches(port, ephemeralPort);
+    }
+}
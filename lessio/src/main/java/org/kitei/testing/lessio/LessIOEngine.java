@@ -0,0 +1,617 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static org.kitei.testing.lessio.LessIOUtils.checkNotNull;
+import static org.kitei.testing.lessio.LessIOUtils.getCurrentClassPath;
+import static org.kitei.testing.lessio.LessIOUtils.safeClassForNames;
+
+import java.io.FileDescriptor;
+import java.net.InetAddress;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.kitei.testing.lessio.LessIOContext.Builder;
+
+/**
+ * Decides whether an operation is allowed for a call stack. The engine holds all rules and caches but does not
+ * depend on {@link SecurityManager}; {@link LessIOSecurityManager} is one front-end that feeds it the operations
+ * it intercepts and the stack of the calling thread.
+ *
+ * Every check method returns normally if the operation is allowed and throws a {@link LessIOException} if not.
+ */
+public class LessIOEngine
+{
+    private static final boolean SKIP_CHECKS = Boolean.getBoolean("kitei.testing.skip-lessio-checks");
+
+    // Updated at engine init and again whenever the front-end reports a new class loader.
+    private final AtomicReference<List<String>> classpathHolder = new AtomicReference<List<String>>();
+
+    private final LessIONetworkDelegate networkDelegate;
+    private final LessIOFilesystemDelegate filesystemDelegate;
+    private final LessIOProcessDelegate processDelegate;
+
+    private final ThreadLocal<StackDecision> stackDecisions = ThreadLocal.withInitial(StackDecision::new);
+
+    private final LessIOClassCache whitelistCache;
+    private final LessIOClassCache testrunnerCache;
+    private final LessIOCapabilities capabilities;
+
+    // Only valid for the classpath they were computed with, like the path decisions.
+    private final LessIOTestClassDecisions testClassDecisions;
+
+    // null if statistics are disabled.
+    private final LessIOStatistics statistics;
+
+    public static LessIOContext.Builder defaultContextBuilder()
+    {
+        final Builder builder = LessIOContext.builder();
+
+        final Collection<Class<?>> junitClasses = safeClassForNames(true,
+            "org.junit.internal.runners.statements.InvokeMethod",
+            "org.junit.internal.runners.statements.RunAfters",
+            "org.junit.internal.runners.statements.RunBefores",
+            "org.junit.rules.TestRule",
+            "org.junit.runners.ParentRunner",
+            "org.junit.runners.model.FrameworkMethod",
+            "org.junit.runners.model.Statement");
+
+        if (!junitClasses.isEmpty()) {
+            builder.addTestrunnerClasses(junitClasses);
+
+            // JUnit accesses <tmpdir>/junitXXXX files
+            builder.addWhitelistedPathGlobs(LessIOUtils.TMP_PATH.resolve("junit*").toString());
+
+            System.err.println("Ready to instrument junit tests.");
+        }
+
+        final Collection<Class<?>> testngClasses = safeClassForNames(true,
+            "org.testng.TestRunner");
+        if (!testngClasses.isEmpty()) {
+            builder.addTestrunnerClasses(testngClasses);
+            System.err.println("Ready to instrument TestNG tests.");
+        }
+
+        builder.addWhitelistedClasses(
+            java.lang.ClassLoader.class,
+            java.net.URLClassLoader.class);
+
+        builder.addWhitelistedHosts(
+            "localhost",
+            "localhost6",
+            "localhost.localdomain",
+            "localhost6.localdomain6",
+            "127.0.0.1",
+            "::1");
+
+        // Never blocks on a slow local host name lookup.
+        builder.addWhitelistedLocalHosts();
+
+        builder.addWhitelistedPaths(Paths.get("/dev/random"),
+            Paths.get("/dev/urandom"));
+
+        // Everything on the java.home path is always accessible.
+        builder.addWhitelistedPathGlobs(Paths.get(System.getProperty("java.home")).resolve("**").toString());
+
+        builder.setLowestEphemeralPort(Integer.getInteger("kitei.testing.low-ephemeral-port", 32768));
+        builder.setHighestEphemeralPort(Integer.getInteger("kitei.testing.high-ephemeral-port", 61000));
+
+        builder.setPathCacheSize(Integer.getInteger("kitei.testing.path-cache-size", LessIOContext.DEFAULT_PATH_CACHE_SIZE));
+        builder.setDecisionCacheSize(Integer.getInteger("kitei.testing.decision-cache-size", LessIOContext.DEFAULT_DECISION_CACHE_SIZE));
+
+        return builder;
+    }
+
+    /**
+     * An engine with the default context.
+     */
+    public static LessIOEngine create()
+    {
+        return new LessIOEngine(defaultContextBuilder().build());
+    }
+
+    LessIOEngine(final LessIOContext context)
+    {
+        checkNotNull(context, "context is null");
+        this.classpathHolder.set(getCurrentClassPath());
+
+        this.whitelistCache = new LessIOClassCache(context.getWhitelistedClasses());
+        this.testrunnerCache = new LessIOClassCache(context.getTestrunnerClasses());
+        this.capabilities = new LessIOCapabilities(whitelistCache, testrunnerCache, LessIOStatistics.ENABLED);
+
+        this.networkDelegate = new LessIONetworkDelegate(context);
+        this.filesystemDelegate = new LessIOFilesystemDelegate(context, classpathHolder);
+        this.processDelegate = new LessIOProcessDelegate();
+
+        this.testClassDecisions = new LessIOTestClassDecisions(context.getDecisionCacheSize());
+
+        this.statistics = LessIOStatistics.ENABLED
+            ? new LessIOStatistics(capabilities, whitelistCache, testrunnerCache, filesystemDelegate.getWhitelistCache(), testClassDecisions.getCache())
+            : null;
+
+        // Create every predicate and walk the stack once before any front-end can use this
+        // engine. This loads all classes used by the checks, so the first real check does
+        // not recurse into class loading while walking.
+        final LessIOPredicate[] predicates = {
+            networkDelegate.getAcceptPredicate("localhost", 0),
+            networkDelegate.getConnectPredicate("localhost", -1),
+            networkDelegate.getListenPredicate(0),
+            filesystemDelegate.getFileAccessPredicate(LessIOUtils.TMP_PATH.toString(), "read"),
+            filesystemDelegate.getFileDescriptorPredicate(FileDescriptor.in, "read"),
+            processDelegate.getExecuteProcessPredicate("")
+        };
+        for (final LessIOPredicate predicate : predicates) {
+            predicate.release();
+        }
+
+        final StackDecision decision = new StackDecision();
+        decision.start(networkDelegate.getMulticastPredicate(null), false);
+        new LessIOStackInspector().inspect(decision);
+        decision.finish();
+
+        // Every check uses these.
+        LessIOCheckEvent.isEventEnabled();
+        LessIOOperation.Type.valueOf("READ");
+        LessIOTestThreads.isOutsideOfTest();
+        LessIOTestThreads.getTestClass();
+        testClassDecisions.get(Object.class, LessIOOperation.Type.READ, "", -1, null);
+    }
+
+    /**
+     * The cached decisions for whitelisted and classpath files.
+     */
+    LessIODecisionCache<String> getPathWhitelistCache()
+    {
+        return filesystemDelegate.getWhitelistCache();
+    }
+
+    /**
+     * The cached decisions of the test classes bound to test threads.
+     */
+    LessIODecisionCache<?> getTestClassDecisionCache()
+    {
+        return testClassDecisions.getCache();
+    }
+
+    /**
+     * The statistics of this engine, null unless they are enabled with <code>kitei.testing.lessio-statistics</code>.
+     */
+    public LessIOStatisticsMXBean getStatistics()
+    {
+        return statistics;
+    }
+
+    /**
+     * Make the statistics of this engine available as the MBean
+     * <code>org.kitei.testing.lessio:type=Statistics,name=&lt;name&gt;</code>. The registration happens in the
+     * background.
+     */
+    public void registerStatistics(final String name)
+    {
+        checkNotNull(name, "name is null");
+        if (statistics != null) {
+            statistics.register(name);
+        }
+    }
+
+    public void check(final LessIOOperation operation, final LessIOStackSource stack) throws LessIOException
+    {
+        checkNotNull(operation, "operation is null");
+
+        switch (operation.getType()) {
+            case READ:
+                checkRead(operation.getName(), stack);
+                break;
+            case WRITE:
+                checkWrite(operation.getName(), stack);
+                break;
+            case DELETE:
+                checkDelete(operation.getName(), stack);
+                break;
+            case READ_FD:
+                checkRead(operation.getFileDescriptor(), stack);
+                break;
+            case WRITE_FD:
+                checkWrite(operation.getFileDescriptor(), stack);
+                break;
+            case CONNECT:
+                checkConnect(operation.getName(), operation.getPort(), stack);
+                break;
+            case RESOLVE:
+                checkConnect(operation.getName(), -1, stack);
+                break;
+            case ACCEPT:
+                checkAccept(operation.getName(), operation.getPort(), stack);
+                break;
+            case LISTEN:
+                checkListen(operation.getPort(), stack);
+                break;
+            case MULTICAST:
+                checkMulticast(operation.getAddress(), stack);
+                break;
+            case EXEC:
+                checkExec(operation.getName(), stack);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+    }
+
+    //
+    // Network
+    //
+
+    public void checkAccept(final String host, final int port, final LessIOStackSource stack) throws LessIOException
+    {
+        checkStack(LessIOOperation.Type.ACCEPT, host, port, networkDelegate.getAcceptPredicate(host, port), stack, false, 0L, null);
+    }
+
+    /**
+     * A port of -1 checks a name lookup for the host.
+     */
+    public void checkConnect(final String host, final int port, final LessIOStackSource stack) throws LessIOException
+    {
+        checkStack(port == -1 ? LessIOOperation.Type.RESOLVE : LessIOOperation.Type.CONNECT, host, port, networkDelegate.getConnectPredicate(host, port), stack, false, 0L, null);
+    }
+
+    public void checkListen(final int port, final LessIOStackSource stack) throws LessIOException
+    {
+        checkStack(LessIOOperation.Type.LISTEN, null, port, networkDelegate.getListenPredicate(port), stack, false, 0L, null);
+    }
+
+    public void checkMulticast(final InetAddress maddr, final LessIOStackSource stack) throws LessIOException
+    {
+        checkStack(LessIOOperation.Type.MULTICAST, maddr, -1, networkDelegate.getMulticastPredicate(maddr), stack, false, 0L, null);
+    }
+
+    //
+    // File system
+    //
+
+    public void checkRead(final String fileName, final LessIOStackSource stack) throws LessIOException
+    {
+        checkFileAccess(LessIOOperation.Type.READ, fileName, "read", stack);
+    }
+
+    public void checkRead(final FileDescriptor fd, final LessIOStackSource stack) throws LessIOException
+    {
+        checkStack(LessIOOperation.Type.READ_FD, fd, -1, filesystemDelegate.getFileDescriptorPredicate(fd, "read"), stack, false, 0L, null);
+    }
+
+    public void checkWrite(final String fileName, final LessIOStackSource stack) throws LessIOException
+    {
+        checkFileAccess(LessIOOperation.Type.WRITE, fileName, "write", stack);
+    }
+
+    public void checkWrite(final FileDescriptor fd, final LessIOStackSource stack) throws LessIOException
+    {
+        checkStack(LessIOOperation.Type.WRITE_FD, fd, -1, filesystemDelegate.getFileDescriptorPredicate(fd, "write"), stack, false, 0L, null);
+    }
+
+    public void checkDelete(final String fileName, final LessIOStackSource stack) throws LessIOException
+    {
+        checkFileAccess(LessIOOperation.Type.DELETE, fileName, "delete", stack);
+    }
+
+    //
+    // Command execution
+    //
+
+    public void checkExec(final String cmd, final LessIOStackSource stack) throws LessIOException
+    {
+        checkStack(LessIOOperation.Type.EXEC, cmd, -1, processDelegate.getExecuteProcessPredicate(cmd), stack, false, 0L, null);
+    }
+
+    //
+    // Class Loader management
+    //
+
+    /**
+     * Re-read the classpath, e.g. when a new class loader is created. In particular, Maven's Surefire
+     * booter changes the classpath after the security manager has been initialized. Only an actual
+     * change replaces the reference, as it invalidates all cached path decisions.
+     */
+    public void refreshClasspath()
+    {
+        final List<String> classpath = getCurrentClassPath();
+        if (!classpath.equals(classpathHolder.get())) {
+            classpathHolder.set(classpath);
+        }
+    }
+
+    private void checkFileAccess(final LessIOOperation.Type type, final String fileName, final String description, final LessIOStackSource stack)
+    {
+        // Neither skipped checks nor threads without a running test need to look at the file.
+        if (SKIP_CHECKS || (stack != null && stack.isCurrentThread() && LessIOTestThreads.isOutsideOfTest())) {
+            return;
+        }
+
+        checkNotNull(fileName, "fileName is null");
+
+        final long startNanos = LessIOStatistics.start();
+        final LessIOCheckEvent event = LessIOCheckEvent.beginIfEnabled(type, fileName, -1);
+
+        // Whitelisted and classpath files are decided without looking at the stack at all.
+        try {
+            if (event != null) {
+                event.cacheHit = filesystemDelegate.isCached(fileName);
+            }
+
+            if (filesystemDelegate.checkFilesystemAccess(fileName)) {
+                recordCheck(type, true, startNanos, event);
+                return;
+            }
+        }
+        catch (final InvalidPathException e) {
+            throw e;
+        }
+        catch (final Exception e) {
+            throw new LessIOException(e, "Exception while accessing %s for %s.", fileName, description);
+        }
+
+        checkStack(type, fileName, -1, filesystemDelegate.getFileAccessPredicate(fileName, description), stack, true, startNanos, event);
+    }
+
+    /**
+     * A file access check has already started to measure itself, all other checks start here. There is no
+     * overload without the started arguments, every frame between the front-end and the walk is walked, too.
+     */
+    private void checkStack(final LessIOOperation.Type type,
+                            final Object resource,
+                            final int port,
+                            final LessIOPredicate predicate,
+                            final LessIOStackSource stack,
+                            final boolean started,
+                            final long startedNanos,
+                            final LessIOCheckEvent startedEvent) throws LessIOException
+    {
+        // Thread marks and the bound test class belong to the thread that runs the check. A recorded
+        // stack (e.g. from the JFR observer) is decided by its classes alone.
+        final boolean currentThread = stack != null && stack.isCurrentThread();
+
+        // all tests are skipped, or no test runs on this thread, so there is no test runner class to find on the stack.
+        if (SKIP_CHECKS || (!started && currentThread && LessIOTestThreads.isOutsideOfTest())) {
+            predicate.release();
+            return;
+        }
+
+        final long startNanos = started ? startedNanos : LessIOStatistics.start();
+        final LessIOCheckEvent event = started ? startedEvent : LessIOCheckEvent.beginIfEnabled(type, resource, port);
+        final Class<?> testClass = currentThread ? LessIOTestThreads.getTestClass() : null;
+
+        boolean allowed = false;
+        try {
+            checkNotNull(stack, "stack is null");
+
+            // The test class bound to this thread is asked first, an operation that it allows needs no stack walk.
+            if (testClass != null && isAllowedForTestClass(testClass, type, resource, port, predicate)) {
+                if (event != null) {
+                    event.decidingClass = testClass;
+                }
+                allowed = true;
+                return;
+            }
+
+            // A check that runs while another check on this thread is walking the stack
+            // can not reuse the thread's decision.
+            StackDecision decision = stackDecisions.get();
+            if (decision.predicate != null) {
+                decision = new StackDecision();
+            }
+
+            decision.start(predicate, testClass != null);
+            try {
+                stack.inspect(decision);
+                if (event != null) {
+                    event.decidingClass = decision.decidingClass;
+                    event.stackDepth = decision.depth;
+                }
+                decision.enforce();
+                allowed = true;
+            }
+            finally {
+                decision.finish();
+            }
+        }
+        finally {
+            predicate.release();
+            recordCheck(type, allowed, startNanos, event);
+        }
+    }
+
+    private void recordCheck(final LessIOOperation.Type type, final boolean allowed, final long startNanos, final LessIOCheckEvent event)
+    {
+        if (statistics != null) {
+            statistics.record(type, allowed, startNanos);
+        }
+        if (event != null) {
+            event.end(allowed);
+        }
+    }
+
+    /**
+     * Decides like the stack walk would on the test class alone. Classes further up the stack are not
+     * seen, so an operation that the test class allows is allowed even if a helper class on the stack
+     * carries a misplaced @AllowAll.
+     *
+     * A denial is not final, a whitelisted or annotated class on the stack may still allow the operation.
+     * An exception is reported by the stack walk and not cached.
+     */
+    private boolean isAllowedForTestClass(final Class<?> testClass,
+                                          final LessIOOperation.Type type,
+                                          final Object resource,
+                                          final int port,
+                                          final LessIOPredicate predicate)
+    {
+        final List<String> classpath = classpathHolder.get();
+        final Boolean cached = testClassDecisions.get(testClass, type, resource, port, classpath);
+        if (cached != null) {
+            return cached;
+        }
+
+        try {
+            final long mask = capabilities.of(testClass);
+
+            // Like on the stack, @AllowAll only allows everything on a test runner class. On any other
+            // class the walk refuses it.
+            final boolean allowed = (mask & LessIOCapabilities.ALLOW_ALL) != 0
+                ? (mask & LessIOCapabilities.TESTRUNNER) != 0
+                : LessIOCapabilities.isAllowed(predicate, testClass, mask);
+            testClassDecisions.put(testClass, type, resource, port, classpath, allowed);
+            return allowed;
+        }
+        catch (final Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * True if the class belongs to a test runner. Operations are only checked if a test runner class is on the stack.
+     */
+    public boolean isTestrunnerClass(final Class<?> clazz)
+    {
+        return testrunnerCache.matches(clazz);
+    }
+
+    /**
+     * True if the port is in the ephemeral port range, i.e. it was most likely picked by the operating system.
+     */
+    public boolean isEphemeralPort(final int port)
+    {
+        return networkDelegate.isValidEphemeralPort(port);
+    }
+
+    /**
+     * Evaluates implicit permissions (whitelisted classes, testrunner classes with @AllowAll)
+     * and the operation predicate in a single pass over the stack. The walk stops as soon as
+     * the operation is allowed; only a denial needs to see the whole stack, because a whitelisted
+     * class further out still overrides it.
+     *
+     * Every thread reuses one decision for all its checks.
+     */
+    private final class StackDecision implements LessIOStackSource.Visitor
+    {
+        private LessIOPredicate predicate = null;
+
+        private boolean allowed = false;
+        private boolean encounteredTestMethodRunner = false;
+        private LessIOException violation = null;
+
+        // Reported in the check event.
+        private Class<?> decidingClass = null;
+        private int depth = 0;
+
+        /**
+         * A thread with a bound test class runs a test, even if there is no test runner class on its stack.
+         */
+        private void start(final LessIOPredicate predicate, final boolean inTest)
+        {
+            this.predicate = predicate;
+            this.allowed = false;
+            this.decidingClass = null;
+            this.depth = 0;
+            this.encounteredTestMethodRunner = inTest;
+            this.violation = null;
+        }
+
+        private void finish()
+        {
+            this.predicate = null;
+            this.violation = null;
+            this.decidingClass = null;
+        }
+
+        @Override
+        public boolean visit(final Class<?> clazz)
+        {
+            depth++;
+
+            // One lookup answers both the whitelist and the testrunner question.
+            final long mask = capabilities.of(clazz);
+
+            // Any whitelisted class is accepted.
+            if ((mask & LessIOCapabilities.WHITELISTED) != 0) {
+                allow(clazz);
+                return false;
+            }
+
+            final boolean testrunnerClass = (mask & LessIOCapabilities.TESTRUNNER) != 0;
+            final boolean allowAll = (mask & LessIOCapabilities.ALLOW_ALL) != 0;
+
+            // Any testrunner class that contains the @AllowAll annotation is
+            // also accepted
+            if (testrunnerClass && allowAll) {
+                allow(clazz);
+                return false;
+            }
+
+            // Once a violation was found, only implicit permissions can change the outcome.
+            if (violation != null) {
+                return true;
+            }
+
+            // Check whether any of the classes on the stack is one of the
+            // test runner classes.
+            if (testrunnerClass) {
+                encounteredTestMethodRunner = true;
+            }
+            else if (allowAll) {
+                violation = new LessIOException("Found @AllowAll on a non-testrunner class (%s), refusing to run test!", clazz.getName());
+                return true;
+            }
+
+            // Look whether any class in the stack is properly authorized to run the
+            // operation.
+            try {
+                if (LessIOCapabilities.isAllowed(predicate, clazz, mask)) {
+                    allow(clazz);
+                    return false;
+                }
+            }
+            catch (final Exception e) {
+                violation = new LessIOException(e, "Exception while processing %s", predicate);
+            }
+
+            return true;
+        }
+
+        private void allow(final Class<?> clazz)
+        {
+            allowed = true;
+            decidingClass = clazz;
+        }
+
+        private void enforce() throws LessIOException
+        {
+            if (allowed) {
+                return;
+            }
+
+            if (violation != null) {
+                throw violation;
+            }
+
+            // Only check permissions when we're running in the context of a JUnit test.
+            if (!encounteredTestMethodRunner) {
+                return;
+            }
+
+            // No class on the stack trace is properly authorized, throw an exception.
+            throw new LessIOException("No class in the class context satisfies %s", predicate);
+        }
+    }
+}
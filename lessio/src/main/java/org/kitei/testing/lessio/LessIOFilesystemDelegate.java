@@ -17,38 +17,68 @@ import static java.lang.String.format;
 
 import static org.kitei.testing.lessio.LessIOUtils.checkNotNull;
 import static org.kitei.testing.lessio.LessIOUtils.createGlobMatcher;
-import static org.kitei.testing.lessio.LessIOUtils.findAnnotation;
-import static org.kitei.testing.lessio.LessIOUtils.hasAnnotations;
 
 import java.io.FileDescriptor;
 import java.io.IOException;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 class LessIOFilesystemDelegate
 {
-    private final LessIOContext context;
     private final AtomicReference<List<String>> classpathHolder;
 
-    private final Map<Path, Boolean> whitelistCache = new ConcurrentHashMap<>();
+    // Globs that can not be indexed in the trie. Matchers from the context are opaque and
+    // evaluated one by one, glob patterns are combined into a single matcher.
+    private final List<PathMatcher> whitelistedPathGlobs = new ArrayList<>();
+    private final List<String> whitelistedPathGlobPatterns = new ArrayList<>();
+    private final Set<Path> whitelistedPaths;
+
+    // Rebuilt whenever the classpath changes.
+    private volatile PathIndex pathIndex;
+
+    // Decisions are only valid for the classpath they were computed with.
+    // Keyed by file name, so a cached decision does not need to parse the name into a Path.
+    private final LessIODecisionCache<String> whitelistCache;
+
+    private final LessIOReusablePredicate.Pool<FilesystemFileAccessPredicate> fileAccessPredicates;
+    private final LessIOReusablePredicate.Pool<FilesystemFileDescriptorPredicate> fileDescriptorPredicates;
 
     private final AtomicBoolean tmpDirWarningFlag = new AtomicBoolean();
     private final AtomicBoolean fileDescriptorWarningFlag = new AtomicBoolean();
 
     LessIOFilesystemDelegate(final LessIOContext context, final AtomicReference<List<String>> classpathHolder)
     {
-        this.context = context;
         this.classpathHolder = classpathHolder;
+        this.whitelistedPaths = context.getWhitelistedPaths();
 
-        for (final Path whitelistedPath : context.getWhitelistedPaths()) {
-            whitelistCache.put(whitelistedPath, Boolean.TRUE);
+        whitelistedPathGlobs.addAll(context.getWhitelistedPathGlobs());
+        final List<String> patterns = new ArrayList<>(context.getWhitelistedPathGlobPatterns());
+        if (LessIOPathTrie.supportsGlobs()) {
+            whitelistedPathGlobPatterns.addAll(patterns);
         }
+        else if (!patterns.isEmpty()) {
+            whitelistedPathGlobs.add(createGlobMatcher(patterns));
+        }
+        this.whitelistCache = new LessIODecisionCache<>(context.getPathCacheSize());
+
+        this.fileAccessPredicates = new LessIOReusablePredicate.Pool<>(FilesystemFileAccessPredicate::new);
+        this.fileDescriptorPredicates = new LessIOReusablePredicate.Pool<>(FilesystemFileDescriptorPredicate::new);
+
+        // Build the index right away. Loading the index classes on the first check
+        // would recurse into that check.
+        this.pathIndex = new PathIndex(classpathHolder.get());
+    }
+
+    LessIODecisionCache<String> getWhitelistCache()
+    {
+        return whitelistCache;
     }
 
     private void tmpDirWarning()
@@ -73,38 +103,49 @@ class LessIOFilesystemDelegate
         }
     }
 
-    boolean checkFilesystemAccess(final Path path)
+    /**
+     * True if the decision for this file name is cached for the current classpath.
+     */
+    boolean isCached(final String fileName)
+    {
+        return whitelistCache.contains(fileName, classpathHolder.get());
+    }
+
+    boolean checkFilesystemAccess(final String fileName)
         throws IOException
     {
-        final Boolean result = whitelistCache.get(path);
+        final List<String> classpath = classpathHolder.get();
+
+        final Boolean result = whitelistCache.get(fileName, classpath);
         if (result != null) {
             return result;
         }
 
-        for (final Path whitelistedPath : context.getWhitelistedPaths()) {
-            // Files.isSameFile accesses the file system so it can not be used here.
-            if (whitelistedPath.equals(path)) {
-                whitelistCache.put(path, Boolean.TRUE);
-                return true;
-            }
-        }
-
-        for (final PathMatcher whitelistedPathGlob : context.getWhitelistedPathGlobs()) {
-            if (whitelistedPathGlob.matches(path)) {
-                whitelistCache.put(path, Boolean.TRUE);
-                return true;
-            }
-        }
+        final boolean whitelisted = isWhitelisted(Paths.get(fileName), classpath);
+        whitelistCache.put(fileName, classpath, whitelisted);
+        return whitelisted;
+    }
 
+    private boolean isWhitelisted(final Path path, final List<String> classpath)
+    {
         /*
          * Although this is an expensive operation, it needs to be here, in a
          * suboptimal location to avoid ClassCircularityErrors that can occur when
          * attempting to load an anonymous class.
          */
-        for (final String classpathReference : classpathHolder.get()) {
-            if (path.toString().startsWith(classpathReference)) {
-                // Files on the CLASSPATH are always allowed.
-                whitelistCache.put(path, Boolean.TRUE);
+        PathIndex index = pathIndex;
+        if (index.classpath != classpath) {
+            index = new PathIndex(classpath);
+            pathIndex = index;
+        }
+
+        // Whitelisted paths, globs and files on the CLASSPATH are always allowed.
+        if (index.trie.matches(path)) {
+            return true;
+        }
+
+        for (final PathMatcher whitelistedPathGlob : whitelistedPathGlobs) {
+            if (whitelistedPathGlob.matches(path)) {
                 return true;
             }
         }
@@ -112,114 +153,124 @@ class LessIOFilesystemDelegate
         return false;
     }
 
-    LessIOPredicate getFileAccessPredicate(final Path path, final String description)
+    /**
+     * All whitelisted paths, whitelisted path globs and classpath entries in a single trie.
+     */
+    private final class PathIndex
+    {
+        private final List<String> classpath;
+        private final LessIOPathTrie trie = new LessIOPathTrie();
+
+        private PathIndex(final List<String> classpath)
+        {
+            this.classpath = classpath;
+
+            for (final Path whitelistedPath : whitelistedPaths) {
+                trie.addPath(whitelistedPath);
+            }
+
+            for (final String whitelistedPathGlobPattern : whitelistedPathGlobPatterns) {
+                trie.addGlob(whitelistedPathGlobPattern);
+            }
+
+            for (final String classpathReference : classpath) {
+                if (classpathReference.isEmpty()) {
+                    continue;
+                }
+
+                try {
+                    trie.addPathAndDescendants(Paths.get(classpathReference));
+                }
+                catch (final InvalidPathException e) {
+                    // Can never match a file name, ignore.
+                    continue;
+                }
+            }
+        }
+    }
+
+    LessIOPredicate getFileAccessPredicate(final String fileName, final String description)
     {
-        return new FilesystemFileAccessPredicate(path, description);
+        return fileAccessPredicates.acquire().reset(fileName, description);
     }
 
     LessIOPredicate getFileDescriptorPredicate(final FileDescriptor fd, final String description)
     {
-        return new FilesystemFileDescriptorPredicate(fd, description);
+        checkNotNull(fd, "fd is null");
+        return fileDescriptorPredicates.acquire().reset(fd, description);
     }
 
-    private class FilesystemFileAccessPredicate implements LessIOPredicate
+    /**
+     * The file name is only parsed once a class is checked, a cached decision does not need the path.
+     */
+    private class FilesystemFileAccessPredicate extends LessIOReusablePredicate
     {
-        private final Path path;
-        private final String description;
+        private String fileName;
+        private String description;
 
-        private final boolean tmpFile;
+        private Path path;
+        private boolean tmpFile;
 
-        private FilesystemFileAccessPredicate(final Path path, final String description)
+        private FilesystemFileAccessPredicate reset(final String fileName, final String description)
         {
-            this.path = path;
+            this.fileName = fileName;
             this.description = description;
-            this.tmpFile = path.startsWith(LessIOUtils.TMP_PATH);
+            this.path = null;
+            return this;
         }
 
         @Override
         public boolean check(final Class<?> clazz)
             throws Exception
         {
-            if (tmpFile && hasAnnotations(clazz, AllowTmpDirAccess.class)) {
-                return true;
+            if (path == null) {
+                path = Paths.get(fileName);
+                tmpFile = path.startsWith(LessIOUtils.TMP_PATH);
             }
 
-            final AllowLocalFileAccess annotation = LessIOUtils.findAnnotation(clazz, AllowLocalFileAccess.class);
-            if (annotation == null) {
-                return false;
+            final LessIOClassProfile profile = LessIOClassProfile.forClass(clazz);
+            if (tmpFile && profile.isAllowTmpDirAccess()) {
+                return true;
             }
 
-            final String[] paths = annotation.paths();
-            if (paths == null) {
+            final LessIOPathRules rules = profile.getLocalFileAccessRules();
+            if (rules == null) {
                 return false;
             }
 
-            for (final String p : paths) {
-                if (p.equals("*")) {
-                    return true;
-                }
-
-                PathMatcher tmpMatcher = null;
-
-                // not here checked.
-                if (p.equals("%FD%")) {
-                    fileDescriptorWarning();
-                    continue;
-                }
-
-                if (p.equals("%TMP_DIR%")) {
-                    tmpDirWarning();
-                    if (tmpFile) {
-                        return true;
-                    }
-                }
-                else if (p.startsWith("%TMP_DIR%/")) {
-                    tmpDirWarning();
-                    tmpMatcher = createGlobMatcher(LessIOUtils.TMP_PATH.resolve(p.substring(10)));
-                }
-
-                if (tmpMatcher != null) {
-                    if (tmpMatcher.matches(path)) {
-                        return true;
-                    }
-                    else {
-                        // next check
-                        continue;
-                    }
-                }
-
-                final Path annotationPath = Paths.get(p);
-
-                // Files.isSameFile accesses the file system so it can not be used here.
-                if (annotationPath.equals(path)) {
-                    return true;
-                }
-
-                final PathMatcher matcher = createGlobMatcher(annotationPath);
-                if (matcher.matches(path)) {
-                    return true;
-                }
+            if (rules.isAllowFileDescriptors()) {
+                fileDescriptorWarning();
+            }
+            if (rules.isDeprecatedTmpDir()) {
+                tmpDirWarning();
             }
 
-            return false;
+            return rules.matches(path, tmpFile);
+        }
+
+        @Override
+        public long getRequiredCapabilities()
+        {
+            return LessIOCapabilities.LOCAL_FILE_ACCESS | LessIOCapabilities.TMP_DIR_ACCESS;
         }
 
         @Override
         public String toString()
         {
-            return format("@AllowLocalFileAccess for %s (%s)", path, description);
+            return format("@AllowLocalFileAccess for %s (%s)", fileName, description);
         }
     }
 
-    private class FilesystemFileDescriptorPredicate implements LessIOPredicate
+    private class FilesystemFileDescriptorPredicate extends LessIOReusablePredicate
     {
-        private final String description;
-        private final FileDescriptor fd;
+        private String description;
+        private FileDescriptor fd;
 
-        private FilesystemFileDescriptorPredicate(final FileDescriptor fd, final String description)
+        private FilesystemFileDescriptorPredicate reset(final FileDescriptor fd, final String description)
         {
-            this.fd = checkNotNull(fd, "fd is null");
+            this.fd = fd;
             this.description = description;
+            return this;
         }
 
         @Override
@@ -229,27 +280,30 @@ class LessIOFilesystemDelegate
 
             // AllowExternalProcess and AllowNetworkAccess imply @AllowLocalFileDescriptorIO
             // since it's required.
-            if (hasAnnotations(clazz, AllowFileDescriptorIO.class, AllowExternalProcess.class, AllowNetworkAccess.class)) {
+            final LessIOClassProfile profile = LessIOClassProfile.forClass(clazz);
+            if (profile.isAllowFileDescriptorIO() || profile.isAllowExternalProcess() || profile.isAllowNetworkAccess()) {
                 return true;
             }
 
-            final AllowLocalFileAccess annotation = findAnnotation(clazz, AllowLocalFileAccess.class);
-            if (annotation == null) {
-                return false;
+            final LessIOPathRules rules = profile.getLocalFileAccessRules();
+            if (rules != null && rules.isAllowFileDescriptors()) {
+                fileDescriptorWarning();
+                return true;
             }
+            return false;
+        }
 
-            final String[] paths = annotation.paths();
-            if (paths == null) {
-                return false;
-            }
+        // Only the deprecated %FD% path needs the check, it prints a warning.
+        @Override
+        public long getGrantingCapabilities()
+        {
+            return LessIOCapabilities.FILE_DESCRIPTOR_IO | LessIOCapabilities.EXTERNAL_PROCESS | LessIOCapabilities.NETWORK_ACCESS;
+        }
 
-            for (final String p : paths) {
-                if (p.equals("%FD%")) {
-                    fileDescriptorWarning();
-                    return true;
-                }
-            }
-            return false;
+        @Override
+        public long getRequiredCapabilities()
+        {
+            return LessIOCapabilities.LOCAL_FILE_DESCRIPTORS;
         }
 
         @Override
@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Classes that are generated at runtime: lambdas and other hidden classes, {@link Proxy} classes, reflection
+ * accessors and the classes of ByteBuddy (and so Mockito), cglib and Javassist. A generated class carries no
+ * Allow* annotations of its own and is never one of the seed classes, so it is classified only through its
+ * host class, its interfaces and its superclass. Reflection on the generated class itself is skipped.
+ *
+ * The host takes the place of the enclosing class: a lambda is allowed what the class that contains its body is
+ * allowed, just like an anonymous class.
+ */
+final class LessIOGeneratedClasses
+{
+    private static final String[] GENERATED_NAME_MARKERS = {
+        "$ByteBuddy$",
+        "$MockitoMock$",
+        "$$EnhancerBy",
+        "$$FastClassBy",
+        "_$$_jvst"
+    };
+
+    private static final String[] GENERATED_NAME_PREFIXES = {
+        "jdk.internal.reflect.Generated",
+        "sun.reflect.Generated"
+    };
+
+    private static final String LAMBDA_MARKER = "$$Lambda";
+
+    private LessIOGeneratedClasses()
+    {
+        throw new AssertionError("do not instantiate");
+    }
+
+    static boolean isGenerated(final Class<?> clazz)
+    {
+        final String name = clazz.getName();
+        if (isHidden(name) || Proxy.isProxyClass(clazz)) {
+            return true;
+        }
+
+        for (final String marker : GENERATED_NAME_MARKERS) {
+            if (name.contains(marker)) {
+                return true;
+            }
+        }
+        for (final String prefix : GENERATED_NAME_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The host of a generated class or the enclosing class of any other class, null if there is none.
+     */
+    static Class<?> getOuterClass(final Class<?> clazz)
+    {
+        final String name = clazz.getName();
+        if (isHidden(name)) {
+            return getHost(clazz, name);
+        }
+        return isGenerated(clazz) ? null : clazz.getEnclosingClass();
+    }
+
+    /**
+     * Hidden classes (and the VM anonymous classes of older JDKs) are the only classes with a '/' in their name.
+     */
+    private static boolean isHidden(final String name)
+    {
+        return name.indexOf('/') >= 0;
+    }
+
+    /**
+     * A lambda is named after the class that contains its body. Its nest host is the outermost class, which would
+     * miss the annotations of a nested class.
+     */
+    private static Class<?> getHost(final Class<?> clazz, final String name)
+    {
+        final int lambdaIndex = name.indexOf(LAMBDA_MARKER);
+        if (lambdaIndex > 0) {
+            try {
+                // The host is on the stack or was, so it is already loaded.
+                return Class.forName(name.substring(0, lambdaIndex), false, clazz.getClassLoader());
+            }
+            catch (final ClassNotFoundException | LinkageError e) {
+                // Fall back to the nest host.
+            }
+        }
+
+        final Class<?> nestHost = clazz.getNestHost();
+        return nestHost == clazz ? null : nestHost;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The names and addresses of the local host.
+ *
+ * The addresses of all network interfaces and the host name of the kernel (the name that
+ * {@link InetAddress#getLocalHost()} looks up) are read right away, this does not involve any name lookup.
+ * The address of the local host is resolved by {@link InetAddress#getLocalHost()} on a background thread, which
+ * can take several seconds with a broken DNS setup. Nothing ever waits for the lookup, and the host name stays
+ * whitelisted if it fails.
+ *
+ * The host name is read from <code>/proc/sys/kernel/hostname</code>, or from the <code>HOSTNAME</code> or
+ * <code>COMPUTERNAME</code> environment variable. On a system without any of these it is only known once
+ * the lookup succeeded.
+ */
+final class LessIOLocalHosts
+{
+    private static final Path KERNEL_HOSTNAME = Paths.get("/proc/sys/kernel/hostname");
+
+    private final Set<String> hosts = ConcurrentHashMap.newKeySet();
+
+    interface Lookup
+    {
+        InetAddress getLocalHost() throws UnknownHostException;
+    }
+
+    static LessIOLocalHosts resolve()
+    {
+        return resolve(readHostName(), InetAddress::getLocalHost);
+    }
+
+    static LessIOLocalHosts resolve(final String hostName, final Lookup lookup)
+    {
+        final LessIOLocalHosts localHosts = new LessIOLocalHosts();
+        localHosts.addInterfaceAddresses();
+        if (hostName != null) {
+            localHosts.hosts.add(hostName);
+        }
+
+        final Thread resolver = new Thread(() -> localHosts.addLocalHost(lookup), "lessio-localhost-resolver");
+        resolver.setDaemon(true);
+        resolver.start();
+
+        return localHosts;
+    }
+
+    private LessIOLocalHosts()
+    {
+    }
+
+    boolean contains(final String host)
+    {
+        return hosts.contains(host);
+    }
+
+    private void addInterfaceAddresses()
+    {
+        try {
+            for (final NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                for (final InetAddress address : Collections.list(networkInterface.getInetAddresses())) {
+                    addAddress(address);
+                }
+            }
+        }
+        catch (final SocketException e) {
+            // No interfaces to whitelist, the host name lookup may still succeed.
+            return;
+        }
+    }
+
+    private void addLocalHost(final Lookup lookup)
+    {
+        try {
+            final InetAddress local = lookup.getLocalHost();
+            addAddress(local);
+            hosts.add(local.getHostName());
+        }
+        catch (final UnknownHostException e) {
+            // The local host name does not resolve, only its name is whitelisted.
+            return;
+        }
+    }
+
+    private static String readHostName()
+    {
+        try {
+            if (Files.isReadable(KERNEL_HOSTNAME)) {
+                final String hostName = new String(Files.readAllBytes(KERNEL_HOSTNAME), UTF_8).trim();
+                if (!hostName.isEmpty()) {
+                    return hostName;
+                }
+            }
+        }
+        catch (final IOException e) {
+            // Try the environment.
+        }
+
+        final String hostName = System.getenv("HOSTNAME");
+        return hostName != null ? hostName : System.getenv("COMPUTERNAME");
+    }
+
+    private void addAddress(final InetAddress address)
+    {
+        final String hostAddress = address.getHostAddress();
+        hosts.add(hostAddress);
+
+        // IPv6 addresses carry the interface as scope ("fe80::1%eth0"), connections may use the plain address.
+        final int scope = hostAddress.indexOf('%');
+        if (scope > 0) {
+            hosts.add(hostAddress.substring(0, scope));
+        }
+    }
+}
@@ -16,65 +16,96 @@ package org.kitei.testing.lessio;
 import static java.lang.String.format;
 
 import static org.kitei.testing.lessio.LessIOUtils.checkNotNull;
-import static org.kitei.testing.lessio.LessIOUtils.findAnnotation;
-import static org.kitei.testing.lessio.LessIOUtils.hasAnnotations;
 
 import java.net.InetAddress;
 
 class LessIONetworkDelegate
 {
+    private static final LessIOPredicate MULTICAST_PREDICATE = new NetworkMulticastPredicate();
+
     private final LessIOContext context;
 
+    private final LessIOReusablePredicate.Pool<NetworkDNSResolutionPredicate> dnsResolutionPredicates;
+    private final LessIOReusablePredicate.Pool<NetworkEndpointPredicate> endpointPredicates;
+    private final LessIOReusablePredicate.Pool<NetworkListenPredicate> listenPredicates;
+
     LessIONetworkDelegate(final LessIOContext context)
     {
         this.context = context;
+
+        this.dnsResolutionPredicates = new LessIOReusablePredicate.Pool<>(NetworkDNSResolutionPredicate::new);
+        this.endpointPredicates = new LessIOReusablePredicate.Pool<>(NetworkEndpointPredicate::new);
+        this.listenPredicates = new LessIOReusablePredicate.Pool<>(NetworkListenPredicate::new);
     }
 
     LessIOPredicate getAcceptPredicate(final String host, final int port)
     {
-        return new NetworkEndpointPredicate(host, port, "accept");
+        checkNotNull(host, "host is null");
+        return endpointPredicates.acquire().reset(host, port, "accept");
     }
 
     LessIOPredicate getConnectPredicate(final String host, final int port)
     {
+        checkNotNull(host, "host is null");
         if (port == -1) {
-            return new NetworkDNSResolutionPredicate(host);
+            return dnsResolutionPredicates.acquire().reset(host);
         }
         else {
-            return new NetworkEndpointPredicate(host, port, "connect");
+            return endpointPredicates.acquire().reset(host, port, "connect");
         }
     }
 
     LessIOPredicate getListenPredicate(final int port)
     {
-        return new NetworkListenPredicate(port);
+        return listenPredicates.acquire().reset(port);
     }
 
     LessIOPredicate getMulticastPredicate(final InetAddress maddr)
     {
-        return new NetworkMulticastPredicate();
+        return MULTICAST_PREDICATE;
     }
 
-    private boolean isValidEphemeralPort(final int port)
+    boolean isValidEphemeralPort(final int port)
     {
         return port == 0 || port >= context.getLowestEphemeralPort() && port <= context.getHighestEphemeralPort();
     }
 
-    private class NetworkDNSResolutionPredicate implements LessIOPredicate
+    private class NetworkDNSResolutionPredicate extends LessIOReusablePredicate
     {
-        private final boolean whitelisted;
+        private boolean whitelisted;
 
-        private NetworkDNSResolutionPredicate(final String host)
+        private NetworkDNSResolutionPredicate reset(final String host)
         {
-            checkNotNull(host, "host is null");
-
-            this.whitelisted = context.getWhitelistedHosts().contains(host);
+            this.whitelisted = context.isWhitelistedHost(host);
+            return this;
         }
 
         @Override
         public boolean check(final Class<?> clazz)
         {
-            return whitelisted || hasAnnotations(clazz, AllowDNSResolution.class, AllowNetworkMulticast.class, AllowNetworkListen.class, AllowNetworkAccess.class);
+            if (whitelisted) {
+                return true;
+            }
+
+            final LessIOClassProfile profile = LessIOClassProfile.forClass(clazz);
+            return profile.isAllowDNSResolution()
+                || profile.isAllowNetworkMulticast()
+                || profile.isAllowNetworkListen()
+                || profile.isAllowNetworkAccess();
+        }
+
+        @Override
+        public long getGrantingCapabilities()
+        {
+            return whitelisted
+                ? LessIOCapabilities.ANY_CLASS
+                : LessIOCapabilities.DNS_RESOLUTION | LessIOCapabilities.NETWORK_MULTICAST | LessIOCapabilities.NETWORK_LISTEN | LessIOCapabilities.NETWORK_ACCESS;
+        }
+
+        @Override
+        public long getRequiredCapabilities()
+        {
+            return 0L;
         }
 
         @Override
@@ -84,56 +115,35 @@ class LessIONetworkDelegate
         }
     }
 
-    private class NetworkEndpointPredicate implements LessIOPredicate
+    private class NetworkEndpointPredicate extends LessIOReusablePredicate
     {
-        private final String host;
-        private final int port;
-        private final String portAsString;
+        private String host;
+        private int port;
+        private boolean ephemeralPort;
 
-        private final String description;
+        private String description;
 
-        private NetworkEndpointPredicate(final String host, final int port, final String description)
+        private NetworkEndpointPredicate reset(final String host, final int port, final String description)
         {
-            this.host = checkNotNull(host, "host is null");
+            this.host = host;
             this.port = port;
-            this.portAsString = Integer.toString(port);
+            this.ephemeralPort = isValidEphemeralPort(port);
 
             this.description = description;
+            return this;
         }
 
         @Override
         public boolean check(final Class<?> clazz)
         {
-            final AllowNetworkAccess access = LessIOUtils.findAnnotation(clazz, AllowNetworkAccess.class);
-            if (access == null) {
-                return false;
-            }
-
-            final String[] endpoints = access.endpoints();
-            if (endpoints == null) {
-                return false;
-            }
-
-            for (final String endpoint : endpoints) {
-                final String[] parts = endpoint.split(":");
-
-                if (parts.length == 2) {
-                    if (!(parts[0].equals("*")
-                    || parts[0].equals(host))) {
-                        // The host part is not a wildcard and does not match. No need to check the port.
-                        continue;
-                    }
-
-                    if (parts[1].equals("*")
-                        || parts[1].equals(portAsString)
-                        || parts[1].equals("0") && isValidEphemeralPort(port))
-                    {
-                        return true;
-                    }
-                }
-            }
+            final LessIOEndpointRules rules = LessIOClassProfile.forClass(clazz).getNetworkAccessRules();
+            return rules != null && rules.matches(host, port, ephemeralPort);
+        }
 
-            return false;
+        @Override
+        public long getRequiredCapabilities()
+        {
+            return LessIOCapabilities.NETWORK_ACCESS;
         }
 
         @Override
@@ -143,37 +153,29 @@ class LessIONetworkDelegate
         }
     }
 
-    private class NetworkListenPredicate implements LessIOPredicate
+    private class NetworkListenPredicate extends LessIOReusablePredicate
     {
-        private final int port;
+        private int port;
+        private boolean ephemeralPort;
 
-        private NetworkListenPredicate(final int port)
+        private NetworkListenPredicate reset(final int port)
         {
             this.port = port;
+            this.ephemeralPort = isValidEphemeralPort(port);
+            return this;
         }
 
         @Override
         public boolean check(final Class<?> clazz)
         {
-            final AllowNetworkListen listen = findAnnotation(clazz, AllowNetworkListen.class);
-            if (listen == null) {
-                return false;
-            }
-
-            final int[] ports = listen.ports();
-            if (ports == null) {
-                return false;
-            }
+            final LessIOPorts ports = LessIOClassProfile.forClass(clazz).getNetworkListenPorts();
+            return ports != null && ports.matches(port, ephemeralPort);
+        }
 
-            for (final int p : ports) {
-                if (p == 0 && isValidEphemeralPort(port)) {
-                    return true;
-                }
-                else if (p == port) {
-                    return true;
-                }
-            }
-            return false;
+        @Override
+        public long getRequiredCapabilities()
+        {
+            return LessIOCapabilities.NETWORK_LISTEN;
         }
 
         @Override
@@ -188,7 +190,19 @@ class LessIONetworkDelegate
         @Override
         public boolean check(final Class<?> clazz)
         {
-            return hasAnnotations(clazz, AllowNetworkMulticast.class);
+            return LessIOClassProfile.forClass(clazz).isAllowNetworkMulticast();
+        }
+
+        @Override
+        public long getGrantingCapabilities()
+        {
+            return LessIOCapabilities.NETWORK_MULTICAST;
+        }
+
+        @Override
+        public long getRequiredCapabilities()
+        {
+            return 0L;
         }
 
         @Override
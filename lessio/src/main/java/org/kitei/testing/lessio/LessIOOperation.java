@@ -0,0 +1,152 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static java.lang.String.format;
+
+import static org.kitei.testing.lessio.LessIOUtils.checkNotNull;
+
+import java.io.FileDescriptor;
+import java.net.InetAddress;
+
+/**
+ * Describes an operation that is checked by a {@link LessIOEngine}.
+ */
+public final class LessIOOperation
+{
+    public enum Type
+    {
+        READ,
+        WRITE,
+        DELETE,
+        READ_FD,
+        WRITE_FD,
+        CONNECT,
+        RESOLVE,
+        ACCEPT,
+        LISTEN,
+        MULTICAST,
+        EXEC
+    }
+
+    private final Type type;
+    private final String name;
+    private final int port;
+    private final FileDescriptor fileDescriptor;
+    private final InetAddress address;
+
+    public static LessIOOperation read(final String fileName)
+    {
+        return new LessIOOperation(Type.READ, checkNotNull(fileName, "fileName is null"), -1, null, null);
+    }
+
+    public static LessIOOperation write(final String fileName)
+    {
+        return new LessIOOperation(Type.WRITE, checkNotNull(fileName, "fileName is null"), -1, null, null);
+    }
+
+    public static LessIOOperation delete(final String fileName)
+    {
+        return new LessIOOperation(Type.DELETE, checkNotNull(fileName, "fileName is null"), -1, null, null);
+    }
+
+    public static LessIOOperation read(final FileDescriptor fd)
+    {
+        return new LessIOOperation(Type.READ_FD, null, -1, checkNotNull(fd, "fd is null"), null);
+    }
+
+    public static LessIOOperation write(final FileDescriptor fd)
+    {
+        return new LessIOOperation(Type.WRITE_FD, null, -1, checkNotNull(fd, "fd is null"), null);
+    }
+
+    /**
+     * A connection to a host. A port of -1 is a name lookup, see {@link #resolve(String)}.
+     */
+    public static LessIOOperation connect(final String host, final int port)
+    {
+        return port == -1 ? resolve(host) : new LessIOOperation(Type.CONNECT, checkNotNull(host, "host is null"), port, null, null);
+    }
+
+    public static LessIOOperation resolve(final String host)
+    {
+        return new LessIOOperation(Type.RESOLVE, checkNotNull(host, "host is null"), -1, null, null);
+    }
+
+    public static LessIOOperation accept(final String host, final int port)
+    {
+        return new LessIOOperation(Type.ACCEPT, checkNotNull(host, "host is null"), port, null, null);
+    }
+
+    public static LessIOOperation listen(final int port)
+    {
+        return new LessIOOperation(Type.LISTEN, null, port, null, null);
+    }
+
+    public static LessIOOperation multicast(final InetAddress address)
+    {
+        return new LessIOOperation(Type.MULTICAST, null, -1, null, address);
+    }
+
+    public static LessIOOperation exec(final String cmd)
+    {
+        return new LessIOOperation(Type.EXEC, cmd, -1, null, null);
+    }
+
+    private LessIOOperation(final Type type, final String name, final int port, final FileDescriptor fileDescriptor, final InetAddress address)
+    {
+        this.type = type;
+        this.name = name;
+        this.port = port;
+        this.fileDescriptor = fileDescriptor;
+        this.address = address;
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * The file name, host name or command, null for all other operations.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * The port, -1 if the operation has none.
+     */
+    public int getPort()
+    {
+        return port;
+    }
+
+    public FileDescriptor getFileDescriptor()
+    {
+        return fileDescriptor;
+    }
+
+    public InetAddress getAddress()
+    {
+        return address;
+    }
+
+    @Override
+    public String toString()
+    {
+        return format("%s %s", type, name != null ? name : fileDescriptor != null ? fileDescriptor : address != null ? address : port);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static java.lang.String.format;
+import static java.util.Collections.unmodifiableSet;
+
+import static org.kitei.testing.lessio.LessIOUtils.createGlobMatcher;
+
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The paths of an {@link AllowLocalFileAccess} annotation, compiled into matchers. Every glob is compiled
+ * exactly once when the annotation is first seen.
+ *
+ * An invalid path does not fail the compilation, it is reported by the file access checks that it could
+ * have allowed. Checks of other operations never see it.
+ */
+final class LessIOPathRules
+{
+    private static final String TMP_DIR = "%TMP_DIR%";
+    private static final String TMP_DIR_PREFIX = TMP_DIR + "/";
+    private static final String FD = "%FD%";
+
+    private final boolean allowAll;
+    private final boolean allowTmpDir;
+    private final boolean allowFileDescriptors;
+    private final boolean deprecatedTmpDir;
+
+    private final Set<Path> paths;
+    private final PathMatcher[] matchers;
+
+    // The first path that could not be compiled, null if all are valid.
+    private final String invalidPath;
+    private final IllegalArgumentException invalidPathError;
+
+    static LessIOPathRules compile(final AllowLocalFileAccess annotation)
+    {
+        final String[] paths = annotation.paths();
+        return new LessIOPathRules(paths == null ? new String[0] : paths);
+    }
+
+    private LessIOPathRules(final String[] annotationPaths)
+    {
+        boolean allowAll = false;
+        boolean allowTmpDir = false;
+        boolean allowFileDescriptors = false;
+        boolean deprecatedTmpDir = false;
+
+        final Set<Path> paths = new HashSet<>();
+        final List<PathMatcher> matchers = new ArrayList<>();
+        String invalidPath = null;
+        IllegalArgumentException invalidPathError = null;
+
+        for (final String p : annotationPaths) {
+            try {
+                if (p.equals("*")) {
+                    allowAll = true;
+                }
+                else if (p.equals(FD)) {
+                    allowFileDescriptors = true;
+                }
+                else if (p.equals(TMP_DIR)) {
+                    deprecatedTmpDir = true;
+                    allowTmpDir = true;
+                }
+                else if (p.startsWith(TMP_DIR_PREFIX)) {
+                    deprecatedTmpDir = true;
+                    matchers.add(createGlobMatcher(LessIOUtils.TMP_PATH.resolve(p.substring(TMP_DIR_PREFIX.length()))));
+                }
+                else {
+                    final Path annotationPath = Paths.get(p);
+                    matchers.add(createGlobMatcher(annotationPath));
+                    paths.add(annotationPath);
+                }
+            }
+            // PatternSyntaxException and InvalidPathException
+            catch (final IllegalArgumentException e) {
+                if (invalidPathError == null) {
+                    invalidPath = p;
+                    invalidPathError = e;
+                }
+            }
+        }
+
+        this.allowAll = allowAll;
+        this.allowTmpDir = allowTmpDir;
+        this.allowFileDescriptors = allowFileDescriptors;
+        this.deprecatedTmpDir = deprecatedTmpDir;
+        this.paths = unmodifiableSet(paths);
+        this.matchers = matchers.toArray(new PathMatcher[matchers.size()]);
+        this.invalidPath = invalidPath;
+        this.invalidPathError = invalidPathError;
+    }
+
+    /**
+     * True if the %FD% pseudo path was used.
+     */
+    boolean isAllowFileDescriptors()
+    {
+        return allowFileDescriptors;
+    }
+
+    /**
+     * True if any of the %TMP_DIR% pseudo paths was used.
+     */
+    boolean isDeprecatedTmpDir()
+    {
+        return deprecatedTmpDir;
+    }
+
+    boolean matches(final Path path, final boolean tmpFile)
+    {
+        if (allowAll || (allowTmpDir && tmpFile)) {
+            return true;
+        }
+
+        // Files.isSameFile accesses the file system so it can not be used here.
+        if (paths.contains(path)) {
+            return true;
+        }
+
+        for (final PathMatcher matcher : matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+
+        if (invalidPathError != null) {
+            throw new IllegalArgumentException(format("Invalid path '%s' in @AllowLocalFileAccess", invalidPath), invalidPathError);
+        }
+
+        return false;
+    }
+}
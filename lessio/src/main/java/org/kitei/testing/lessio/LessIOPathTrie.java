@@ -0,0 +1,295 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static org.kitei.testing.lessio.LessIOUtils.checkNotNull;
+import static org.kitei.testing.lessio.LessIOUtils.createGlobMatcher;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A trie of path segments. Looking up a path costs one table probe per path segment, independent of the
+ * number of entries in the trie. Lookups of literal paths do not allocate.
+ *
+ * Globs are attached to the node of their literal leading segments. All globs on a node are combined into
+ * a single {@link PathMatcher}, which is only evaluated for paths that pass through that node. Globs without
+ * a literal prefix all end up in the one matcher of the root node.
+ *
+ * A trie is built by a single thread and must be safely published before it is used for lookups.
+ */
+final class LessIOPathTrie
+{
+    private static final char SEPARATOR = FileSystems.getDefault().getSeparator().charAt(0);
+    private static final String DESCENDANTS_GLOB = "**";
+    private static final String GLOB_META_CHARS = "\\*?[{";
+
+    private final Node root = new Node("");
+    private boolean hasGlobs = false;
+
+    /**
+     * Globs can only be indexed if the file system uses '/' as separator, which is never escaped in a glob.
+     */
+    static boolean supportsGlobs()
+    {
+        return SEPARATOR == '/';
+    }
+
+    /**
+     * Match exactly this path.
+     */
+    void addPath(final Path path)
+    {
+        insert(path).exact = true;
+    }
+
+    /**
+     * Match this path and any path below it.
+     */
+    void addPathAndDescendants(final Path path)
+    {
+        final Node node = insert(path);
+        node.exact = true;
+        node.descendants = true;
+    }
+
+    /**
+     * Match all paths matched by a glob in the syntax of {@link java.nio.file.FileSystem#getPathMatcher(String)}.
+     */
+    void addGlob(final String glob)
+    {
+        checkNotNull(glob, "glob is null");
+        if (!supportsGlobs()) {
+            throw new IllegalStateException("Globs are not supported for this file system");
+        }
+
+        // Find the literal leading segments of the glob.
+        int literalEnd = -1;
+        for (int i = 0; i < glob.length(); i++) {
+            final char c = glob.charAt(i);
+            if (c == SEPARATOR) {
+                literalEnd = i;
+            }
+            else if (GLOB_META_CHARS.indexOf(c) >= 0) {
+                final String remainder = glob.substring(literalEnd + 1);
+                final Node node = literalEnd < 0 ? root : insert(glob.substring(0, literalEnd));
+
+                if (remainder.equals(DESCENDANTS_GLOB) && node != root) {
+                    node.descendants = true;
+                }
+                else {
+                    node.addGlob(glob);
+                    hasGlobs = true;
+                }
+                return;
+            }
+        }
+
+        // No wildcards at all, this is a plain path.
+        addPath(Paths.get(glob));
+    }
+
+    boolean matches(final Path path)
+    {
+        final String value = path.toString();
+        return matchesPath(value) || (hasGlobs && matchesGlobs(value, path));
+    }
+
+    private boolean matchesPath(final String value)
+    {
+        final int length = value.length();
+
+        Node node = root;
+        int start = 0;
+        while (true) {
+            int end = value.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                end = length;
+            }
+
+            node = node.child(value, start, end);
+            if (node == null) {
+                return false;
+            }
+
+            if (end >= length) {
+                return node.exact;
+            }
+
+            if (node.descendants) {
+                return true;
+            }
+
+            start = end + 1;
+        }
+    }
+
+    private boolean matchesGlobs(final String value, final Path path)
+    {
+        final int length = value.length();
+
+        Node node = root;
+        int start = 0;
+        while (true) {
+            if (node.matchesGlobs(path)) {
+                return true;
+            }
+
+            int end = value.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                end = length;
+            }
+
+            node = node.child(value, start, end);
+            if (node == null) {
+                return false;
+            }
+
+            if (end >= length) {
+                return node.matchesGlobs(path);
+            }
+
+            start = end + 1;
+        }
+    }
+
+    private Node insert(final Path path)
+    {
+        checkNotNull(path, "path is null");
+        return insert(path.toString());
+    }
+
+    private Node insert(final String value)
+    {
+        final int length = value.length();
+
+        Node node = root;
+        int start = 0;
+        while (true) {
+            int end = value.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                end = length;
+            }
+
+            Node child = node.child(value, start, end);
+            if (child == null) {
+                child = node.addChild(value.substring(start, end));
+            }
+            node = child;
+
+            if (end >= length) {
+                return node;
+            }
+
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Hash of a string region, identical to hashing the substring.
+     */
+    private static int hash(final String value, final int start, final int end)
+    {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + value.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Node
+    {
+        private static final Node[] EMPTY = new Node[0];
+
+        private final String segment;
+
+        private boolean exact = false;
+        private boolean descendants = false;
+
+        // all globs attached to this node, combined into one matcher.
+        private final List<String> globs = new ArrayList<>();
+        private PathMatcher matcher = null;
+
+        // open addressing table, always a power of two in size.
+        private Node[] children = EMPTY;
+        private int size = 0;
+
+        private Node(final String segment)
+        {
+            this.segment = segment;
+        }
+
+        private void addGlob(final String glob)
+        {
+            globs.add(glob);
+            matcher = createGlobMatcher(globs);
+        }
+
+        private boolean matchesGlobs(final Path path)
+        {
+            return matcher != null && matcher.matches(path);
+        }
+
+        private Node child(final String value, final int start, final int end)
+        {
+            if (size == 0) {
+                return null;
+            }
+
+            final int length = end - start;
+            final int mask = children.length - 1;
+            for (int i = hash(value, start, end) & mask; ; i = (i + 1) & mask) {
+                final Node child = children[i];
+                if (child == null) {
+                    return null;
+                }
+                if (child.segment.length() == length && child.segment.regionMatches(0, value, start, length)) {
+                    return child;
+                }
+            }
+        }
+
+        private Node addChild(final String childSegment)
+        {
+            if ((size + 1) * 2 > children.length) {
+                final Node[] oldChildren = children;
+                children = new Node[Math.max(4, oldChildren.length * 2)];
+                for (final Node child : oldChildren) {
+                    if (child != null) {
+                        place(child);
+                    }
+                }
+            }
+
+            final Node child = new Node(childSegment);
+            place(child);
+            size++;
+            return child;
+        }
+
+        private void place(final Node child)
+        {
+            final int mask = children.length - 1;
+            int i = hash(child.segment, 0, child.segment.length()) & mask;
+            while (children[i] != null) {
+                i = (i + 1) & mask;
+            }
+            children[i] = child;
+        }
+    }
+}
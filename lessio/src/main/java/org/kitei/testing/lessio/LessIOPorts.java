@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of ports. Port 0 stands for "any ephemeral port". Matching a port is a
+ * binary search over a sorted array.
+ */
+final class LessIOPorts
+{
+    private final boolean anyPort;
+    private final boolean ephemeral;
+    private final int[] ports;
+
+    /**
+     * The ports of an {@link AllowNetworkListen} annotation. The annotation is only read once, the ports
+     * are copied into a private array.
+     */
+    static LessIOPorts compile(final AllowNetworkListen annotation)
+    {
+        final Builder builder = new Builder();
+        final int[] ports = annotation.ports();
+        if (ports != null) {
+            for (final int port : ports) {
+                builder.add(port);
+            }
+        }
+        return builder.build();
+    }
+
+    private LessIOPorts(final boolean anyPort, final boolean ephemeral, final int[] ports)
+    {
+        this.anyPort = anyPort;
+        this.ephemeral = ephemeral;
+        this.ports = ports;
+    }
+
+    /**
+     * @param ephemeralPort true if the port is in the ephemeral port range of the current context.
+     */
+    boolean matches(final int port, final boolean ephemeralPort)
+    {
+        return anyPort
+            || (ephemeral && ephemeralPort)
+            || Arrays.binarySearch(ports, port) >= 0;
+    }
+
+    static final class Builder
+    {
+        private boolean anyPort = false;
+        private boolean ephemeral = false;
+        private int[] ports = new int[4];
+        private int size = 0;
+
+        Builder addAnyPort()
+        {
+            anyPort = true;
+            return this;
+        }
+
+        Builder add(final int port)
+        {
+            if (port == 0) {
+                ephemeral = true;
+            }
+            else {
+                if (size == ports.length) {
+                    ports = Arrays.copyOf(ports, size * 2);
+                }
+                ports[size++] = port;
+            }
+            return this;
+        }
+
+        LessIOPorts build()
+        {
+            final int[] sortedPorts = Arrays.copyOf(ports, size);
+            Arrays.sort(sortedPorts);
+            return new LessIOPorts(anyPort, ephemeral, sortedPorts);
+        }
+    }
+}
@@ -17,6 +17,30 @@ interface LessIOPredicate
 {
     boolean check(Class<?> clazz) throws Exception;
 
+    /**
+     * A class with any of these {@link LessIOCapabilities} is allowed without calling {@link #check(Class)}.
+     */
+    default long getGrantingCapabilities()
+    {
+        return 0L;
+    }
+
+    /**
+     * {@link #check(Class)} can only allow a class with one of these {@link LessIOCapabilities}, all other
+     * classes are not checked.
+     */
+    default long getRequiredCapabilities()
+    {
+        return LessIOCapabilities.ANY_CLASS;
+    }
+
+    /**
+     * Called when the check that used this predicate is finished.
+     */
+    default void release()
+    {
+    }
+
     @Override
     String toString();
 }
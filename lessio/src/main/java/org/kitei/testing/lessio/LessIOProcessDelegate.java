@@ -15,36 +15,47 @@ package org.kitei.testing.lessio;
 
 import static java.lang.String.format;
 
-import static org.kitei.testing.lessio.LessIOUtils.hasAnnotations;
-
 class LessIOProcessDelegate
 {
-    private final LessIOContext context;
+    private final LessIOReusablePredicate.Pool<ProcessExecuteProcessPredicate> executeProcessPredicates;
 
-    LessIOProcessDelegate(final LessIOContext context)
+    LessIOProcessDelegate()
     {
-        this.context = context;
+        this.executeProcessPredicates = new LessIOReusablePredicate.Pool<>(ProcessExecuteProcessPredicate::new);
     }
 
     LessIOPredicate getExecuteProcessPredicate(final String cmd)
     {
-        return new ProcessExecuteProcessPredicate(cmd);
+        return executeProcessPredicates.acquire().reset(cmd);
     }
 
-    private static class ProcessExecuteProcessPredicate implements LessIOPredicate
+    private static class ProcessExecuteProcessPredicate extends LessIOReusablePredicate
     {
-        private final String cmd;
+        private String cmd;
 
-        private ProcessExecuteProcessPredicate(final String cmd)
+        private ProcessExecuteProcessPredicate reset(final String cmd)
         {
             this.cmd = cmd;
+            return this;
         }
 
         @Override
         public boolean check(final Class<?> clazz)
             throws Exception
         {
-            return hasAnnotations(clazz, AllowExternalProcess.class);
+            return LessIOClassProfile.forClass(clazz).isAllowExternalProcess();
+        }
+
+        @Override
+        public long getGrantingCapabilities()
+        {
+            return LessIOCapabilities.EXTERNAL_PROCESS;
+        }
+
+        @Override
+        public long getRequiredCapabilities()
+        {
+            return 0L;
         }
 
         @Override
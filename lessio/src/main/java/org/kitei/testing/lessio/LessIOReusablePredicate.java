@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import java.util.function.Supplier;
+
+/**
+ * A predicate that is reused by all checks on a thread, so a check does not allocate a new predicate.
+ * Implementations store the operation in mutable fields and only build their description in
+ * {@link #toString()}, which is called when a check fails.
+ */
+abstract class LessIOReusablePredicate implements LessIOPredicate
+{
+    private boolean inUse = false;
+
+    @Override
+    public final void release()
+    {
+        inUse = false;
+    }
+
+    /**
+     * One reusable predicate per thread. A check that starts while another check on the same thread still
+     * uses the predicate (e.g. a file read while loading a class during a stack walk) gets a new instance.
+     */
+    static final class Pool<T extends LessIOReusablePredicate>
+    {
+        private final Supplier<T> factory;
+        private final ThreadLocal<T> predicates;
+
+        Pool(final Supplier<T> factory)
+        {
+            this.factory = factory;
+            this.predicates = ThreadLocal.withInitial(factory);
+        }
+
+        T acquire()
+        {
+            final T predicate = predicates.get();
+            final LessIOReusablePredicate reusable = predicate;
+            if (reusable.inUse) {
+                return factory.get();
+            }
+            reusable.inUse = true;
+            return predicate;
+        }
+    }
+}
@@ -13,126 +13,43 @@
  */
 package org.kitei.testing.lessio;
 
-import static org.kitei.testing.lessio.LessIOUtils.checkNotNull;
-import static org.kitei.testing.lessio.LessIOUtils.createGlobMatcher;
-import static org.kitei.testing.lessio.LessIOUtils.getCurrentClassPath;
-import static org.kitei.testing.lessio.LessIOUtils.hasAnnotations;
-import static org.kitei.testing.lessio.LessIOUtils.matchesWhitelistCache;
-import static org.kitei.testing.lessio.LessIOUtils.safeClassForNames;
-
 import java.io.FileDescriptor;
 import java.net.InetAddress;
-import java.net.UnknownHostException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.security.Permission;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.IdentityHashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicReference;
-
-import org.kitei.testing.lessio.LessIOContext.Builder;
 
+/**
+ * A {@link SecurityManager} front-end for the {@link LessIOEngine}. Every intercepted operation is checked
+ * against the stack of the calling thread.
+ */
+@SuppressWarnings("removal")
 public class LessIOSecurityManager
     extends SecurityManager
 {
-    private static final boolean SKIP_CHECKS = Boolean.getBoolean("kitei.testing.skip-lessio-checks");
-
-    // Updated at SecurityManager init and again at every ClassLoader init.
-    private final AtomicReference<List<String>> classpathHolder = new AtomicReference<List<String>>();
-
-    private final LessIONetworkDelegate networkDelegate;
-    private final LessIOFilesystemDelegate filesystemDelegate;
-    private final LessIOProcessDelegate processDelegate;
-
-    private final Map<Class<?>, Boolean> whitelistCache = Collections.synchronizedMap(new IdentityHashMap<Class<?>, Boolean>(2048));
-    private final Map<Class<?>, Boolean> testrunnerCache = Collections.synchronizedMap(new IdentityHashMap<Class<?>, Boolean>(128));
+    private final LessIOEngine engine;
+    private final LessIOStackSource stack = LessIOStackSource.currentThread();
 
     public static LessIOContext.Builder defaultContextBuilder()
     {
-        final Builder builder = LessIOContext.builder();
-
-        final Collection<Class<?>> junitClasses = safeClassForNames(true,
-            "org.junit.internal.runners.statements.InvokeMethod",
-            "org.junit.internal.runners.statements.RunAfters",
-            "org.junit.internal.runners.statements.RunBefores",
-            "org.junit.rules.TestRule",
-            "org.junit.runners.ParentRunner",
-            "org.junit.runners.model.FrameworkMethod",
-            "org.junit.runners.model.Statement");
-
-        if (!junitClasses.isEmpty()) {
-            builder.addTestrunnerClasses(junitClasses);
-
-            // JUnit accesses <tmpdir>/junitXXXX files
-            builder.addWhitelistedPathGlobs(createGlobMatcher(LessIOUtils.TMP_PATH.resolve("junit*")));
-
-            System.err.println("Ready to instrument junit tests.");
-        }
-
-        final Collection<Class<?>> testngClasses = safeClassForNames(true,
-            "org.testng.TestRunner");
-        if (!testngClasses.isEmpty()) {
-            builder.addTestrunnerClasses(testngClasses);
-            System.err.println("Ready to instrument TestNG tests.");
-        }
-
-        builder.addWhitelistedClasses(
-            java.lang.ClassLoader.class,
-            java.net.URLClassLoader.class);
-
-        builder.addWhitelistedHosts(
-            "localhost",
-            "localhost6",
-            "localhost.localdomain",
-            "localhost6.localdomain6",
-            "127.0.0.1",
-            "::1");
-
-        try {
-            final InetAddress local = InetAddress.getLocalHost();
-            builder.addWhitelistedHosts(
-                local.getHostAddress(),
-                local.getHostName());
-        } catch (UnknownHostException e) {
-            throw new RuntimeException(e);
-        }
-
-        builder.addWhitelistedPaths(Paths.get("/dev/random"),
-            Paths.get("/dev/urandom"));
-
-        // Everything on the java.home path is always accessible.
-        builder.addWhitelistedPathGlobs(createGlobMatcher(Paths.get(System.getProperty("java.home")).resolve("**")));
-
-        builder.setLowestEphemeralPort(Integer.getInteger("kitei.testing.low-ephemeral-port", 32768));
-        builder.setHighestEphemeralPort(Integer.getInteger("kitei.testing.high-ephemeral-port", 61000));
-
-        return builder;
+        return LessIOEngine.defaultContextBuilder();
     }
 
     public LessIOSecurityManager()
     {
         this(defaultContextBuilder().build());
+        engine.registerStatistics("LessIOSecurityManager");
     }
 
     protected LessIOSecurityManager(final LessIOContext context)
     {
-        checkNotNull(context, "context is null");
-        this.classpathHolder.set(getCurrentClassPath());
-
-        for (final Class<?> whitelistedClass : context.getWhitelistedClasses()) {
-            whitelistCache.put(whitelistedClass, Boolean.TRUE);
-        }
-
-        for (final Class<?> testrunnerClass : context.getTestrunnerClasses()) {
-            testrunnerCache.put(testrunnerClass, Boolean.TRUE);
-        }
+        this.engine = new LessIOEngine(context);
+    }
 
-        this.networkDelegate = new LessIONetworkDelegate(context);
-        this.filesystemDelegate = new LessIOFilesystemDelegate(context, classpathHolder);
-        this.processDelegate = new LessIOProcessDelegate(context);
+    /**
+     * The cached decisions for whitelisted and classpath files.
+     */
+    LessIODecisionCache<String> getPathWhitelistCache()
+    {
+        return engine.getPathWhitelistCache();
     }
 
     //
@@ -142,12 +59,7 @@ public class LessIOSecurityManager
     @Override
     public void checkAccept(final String host, final int port) throws LessIOException
     {
-        final Class<?>[] classContext = getClassContext();
-        if (checkImplicitPermissions(classContext)) {
-            return;
-        }
-
-        checkPredicate(classContext, networkDelegate.getAcceptPredicate(host, port));
+        engine.checkAccept(host, port, stack);
     }
 
     @Override
@@ -159,21 +71,13 @@ public class LessIOSecurityManager
     @Override
     public void checkConnect(final String host, final int port) throws LessIOException
     {
-        final Class<?>[] classContext = getClassContext();
-        if (checkImplicitPermissions(classContext)) {
-            return;
-        }
-        checkPredicate(classContext, networkDelegate.getConnectPredicate(host, port));
+        engine.checkConnect(host, port, stack);
     }
 
     @Override
     public void checkListen(final int port) throws LessIOException
     {
-        final Class<?>[] classContext = getClassContext();
-        if (checkImplicitPermissions(classContext)) {
-            return;
-        }
-        checkPredicate(classContext, networkDelegate.getListenPredicate(port));
+        engine.checkListen(port, stack);
     }
 
     @Override
@@ -185,11 +89,7 @@ public class LessIOSecurityManager
     @Override
     public void checkMulticast(final InetAddress maddr) throws LessIOException
     {
-        final Class<?>[] classContext = getClassContext();
-        if (checkImplicitPermissions(classContext)) {
-            return;
-        }
-        checkPredicate(classContext, networkDelegate.getMulticastPredicate(maddr));
+        engine.checkMulticast(maddr, stack);
     }
 
     //
@@ -205,90 +105,31 @@ public class LessIOSecurityManager
     @Override
     public void checkRead(final String fileName)
     {
-        final Class<?>[] classContext = getClassContext();
-        if (checkImplicitPermissions(classContext)) {
-            return;
-        }
-
-        checkNotNull(fileName, "fileName is null");
-        final Path path = Paths.get(fileName);
-
-        try {
-            if (filesystemDelegate.checkFilesystemAccess(path)) {
-                return;
-            }
-        }
-        catch (final Exception e) {
-            throw new LessIOException(e, "Exception while accessing %s for read.", fileName);
-        }
-
-        checkPredicate(classContext, filesystemDelegate.getFileAccessPredicate(path, "read"));
+        engine.checkRead(fileName, stack);
     }
 
     @Override
     public void checkRead(final FileDescriptor fd)
     {
-        final Class<?>[] classContext = getClassContext();
-        if (checkImplicitPermissions(classContext)) {
-            return;
-        }
-        checkPredicate(classContext, filesystemDelegate.getFileDescriptorPredicate(fd, "read"));
+        engine.checkRead(fd, stack);
     }
 
     @Override
     public void checkWrite(final FileDescriptor fd)
     {
-        final Class<?>[] classContext = getClassContext();
-        if (checkImplicitPermissions(classContext)) {
-            return;
-        }
-        checkPredicate(classContext, filesystemDelegate.getFileDescriptorPredicate(fd, "write"));
+        engine.checkWrite(fd, stack);
     }
 
     @Override
     public void checkWrite(final String fileName)
     {
-        final Class<?>[] classContext = getClassContext();
-        if (checkImplicitPermissions(classContext)) {
-            return;
-        }
-
-        checkNotNull(fileName, "fileName is null");
-        final Path path = Paths.get(fileName);
-
-        try {
-            if (filesystemDelegate.checkFilesystemAccess(path)) {
-                return;
-            }
-        }
-        catch (final Exception e) {
-            throw new LessIOException(e, "Exception while accessing %s for write.", fileName);
-        }
-
-        checkPredicate(classContext, filesystemDelegate.getFileAccessPredicate(path, "write"));
+        engine.checkWrite(fileName, stack);
     }
 
     @Override
     public void checkDelete(final String fileName)
     {
-        final Class<?>[] classContext = getClassContext();
-        if (checkImplicitPermissions(classContext)) {
-            return;
-        }
-
-        checkNotNull(fileName, "fileName is null");
-        final Path path = Paths.get(fileName);
-
-        try {
-            if (filesystemDelegate.checkFilesystemAccess(path)) {
-                return;
-            }
-        }
-        catch (final Exception e) {
-            throw new LessIOException(e, "Exception while accessing %s for delete.", fileName);
-        }
-
-        checkPredicate(classContext, filesystemDelegate.getFileAccessPredicate(path, "delete"));
+        engine.checkDelete(fileName, stack);
     }
 
     //
@@ -297,11 +138,7 @@ public class LessIOSecurityManager
     @Override
     public void checkExec(final String cmd) throws LessIOException
     {
-        final Class<?>[] classContext = getClassContext();
-        if (checkImplicitPermissions(classContext)) {
-            return;
-        }
-        checkPredicate(classContext, processDelegate.getExecuteProcessPredicate(cmd));
+        engine.checkExec(cmd, stack);
     }
 
     //
@@ -310,10 +147,8 @@ public class LessIOSecurityManager
     @Override
     public void checkCreateClassLoader()
     {
-        // Reset classpath refernce on classloader creation in case the classpath has changed.
-        // In particular, Maven's Surefire booter changes the classpath after the security
-        // manager has been initialized.
-        classpathHolder.set(getCurrentClassPath());
+        // The classpath may have changed, see LessIOEngine#refreshClasspath().
+        engine.refreshClasspath();
     }
 
     //
@@ -330,11 +165,6 @@ public class LessIOSecurityManager
     {
     }
 
-    @Override
-    public void checkMemberAccess(final Class<?> clazz, final int which)
-    {
-    }
-
     @Override
     public void checkPackageAccess(final String pkg)
     {
@@ -374,74 +204,4 @@ public class LessIOSecurityManager
     public void checkPermission(final Permission perm)
     {
     }
-
-    private boolean checkImplicitPermissions(final Class<?>[] classContext)
-    {
-        // all tests are skipped.
-        if (SKIP_CHECKS) {
-            return true;
-        }
-
-        // Check all classes in the class context.
-        for (final Class<?> clazz : classContext) {
-            // Any whitelisted class is accepted.
-            if (isWhitelistedClass(clazz)) {
-                return true;
-            }
-
-            // Any testrunner class that contains the @AllowAll annotation is
-            // also accepted
-            if (isTestrunnerClass(clazz) && hasAnnotations(clazz, AllowAll.class)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    private boolean isWhitelistedClass(final Class<?> clazz)
-    {
-        return matchesWhitelistCache(clazz, whitelistCache);
-    }
-
-    private boolean isTestrunnerClass(final Class<?> clazz)
-    {
-        return matchesWhitelistCache(clazz, testrunnerCache);
-    }
-
-    private void checkPredicate(final Class<?>[] classContext,
-                                final LessIOPredicate predicate) throws LessIOException
-    {
-        // Only check permissions when we're running in the context of a JUnit test.
-        boolean encounteredTestMethodRunner = false;
-
-        for (final Class<?> clazz : classContext) {
-            // Check whether any of the classes on the stack is one of the
-            // test runner classes.
-            if (isTestrunnerClass(clazz)) {
-                encounteredTestMethodRunner = true;
-            }
-            else if (hasAnnotations(clazz, AllowAll.class)) {
-                throw new LessIOException("Found @AllowAll on a non-testrunner class (%s), refusing to run test!", clazz.getName());
-            }
-
-            // Look whether any class in the stack is properly authorized to run the
-            // operation.
-            try {
-                if (predicate.check(clazz)) {
-                    return;
-                }
-            }
-            catch (final Exception e) {
-                throw new LessIOException(e, "Exception while processing %s", predicate);
-            }
-        }
-
-        if (!encounteredTestMethodRunner) {
-            return;
-        }
-
-        // No class on the stack trace is properly authorized, throw an exception.
-        throw new LessIOException("No class in the class context satisfies %s", predicate);
-    }
 }
@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static java.lang.StackWalker.Option.RETAIN_CLASS_REFERENCE;
+
+import static org.kitei.testing.lessio.LessIOUtils.checkNotNull;
+
+import java.lang.StackWalker.StackFrame;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Lazy replacement for {@link SecurityManager#getClassContext()}. Frames are pulled
+ * from the stack one batch at a time and handed to a {@link LessIOStackSource.Visitor} until
+ * it has reached a decision, so a check that is decided close to the top of a deep stack
+ * never copies the rest of it.
+ */
+final class LessIOStackInspector implements LessIOStackSource
+{
+    private final StackWalker stackWalker = StackWalker.getInstance(RETAIN_CLASS_REFERENCE);
+    private final ThreadLocal<Walk> walks = ThreadLocal.withInitial(Walk::new);
+
+    @Override
+    public boolean isCurrentThread()
+    {
+        return true;
+    }
+
+    /**
+     * Visit the classes on the current thread's stack, innermost frame first. Consecutive
+     * frames from the same class are reported only once.
+     */
+    @Override
+    public void inspect(final Visitor visitor)
+    {
+        checkNotNull(visitor, "visitor is null");
+
+        // Every thread reuses its walk, unless the visitor itself triggers another inspection.
+        Walk walk = walks.get();
+        if (walk.visitor != null) {
+            walk = new Walk();
+        }
+
+        walk.visitor = visitor;
+        try {
+            stackWalker.walk(walk);
+        }
+        finally {
+            walk.visitor = null;
+        }
+    }
+
+    private static final class Walk implements Function<Stream<StackFrame>, Void>
+    {
+        private Visitor visitor = null;
+
+        @Override
+        public Void apply(final Stream<StackFrame> frames)
+        {
+            Class<?> lastClazz = null;
+
+            final Iterator<StackFrame> it = frames.iterator();
+            while (it.hasNext()) {
+                final Class<?> clazz = it.next().getDeclaringClass();
+                if (clazz == lastClazz) {
+                    continue;
+                }
+                lastClazz = clazz;
+
+                if (!visitor.visit(clazz)) {
+                    break;
+                }
+            }
+            return null;
+        }
+    }
+}
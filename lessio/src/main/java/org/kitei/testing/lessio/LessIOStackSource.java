@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static org.kitei.testing.lessio.LessIOUtils.checkNotNull;
+
+/**
+ * The call stack that a check is evaluated against.
+ */
+public interface LessIOStackSource
+{
+    /**
+     * Visit the classes on the stack, innermost frame first, until the visitor returns false.
+     * Consecutive frames from the same class should be reported only once.
+     */
+    void inspect(Visitor visitor);
+
+    /**
+     * True if this is the stack of the thread that runs the check. Only then do the marks of
+     * {@link LessIOTestThreads} and the test class bound to the thread apply.
+     */
+    default boolean isCurrentThread()
+    {
+        return false;
+    }
+
+    interface Visitor
+    {
+        /**
+         * @return true if the walk should continue with the next class, false to stop.
+         */
+        boolean visit(Class<?> clazz);
+    }
+
+    /**
+     * The stack of the thread that runs the check, walked lazily with a {@link StackWalker}.
+     */
+    static LessIOStackSource currentThread()
+    {
+        return new LessIOStackInspector();
+    }
+
+    /**
+     * A fixed list of classes, innermost first (e.g. the result of {@link SecurityManager#getClassContext()}).
+     */
+    static LessIOStackSource of(final Class<?> ... classes)
+    {
+        checkNotNull(classes, "classes is null");
+        return visitor -> {
+            Class<?> lastClazz = null;
+            for (final Class<?> clazz : classes) {
+                if (clazz == lastClazz) {
+                    continue;
+                }
+                lastClazz = clazz;
+
+                if (!visitor.visit(clazz)) {
+                    return;
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static java.lang.String.format;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Collects the statistics of a {@link LessIOEngine}. Every check costs a few uncontended counter updates.
+ * Only collected with <code>-Dkitei.testing.lessio-statistics=true</code>.
+ */
+final class LessIOStatistics implements LessIOStatisticsMXBean
+{
+    static final boolean ENABLED = Boolean.getBoolean("kitei.testing.lessio-statistics");
+
+    // Powers of two from 128ns up to ~8ms, plus one unbounded bucket.
+    private static final int FIRST_BUCKET_SHIFT = 7;
+    private static final int BUCKET_COUNT = 18;
+
+    private static final LessIOOperation.Type[] TYPES = LessIOOperation.Type.values();
+
+    private final LongAdder[] allowedCounts = newCounters(TYPES.length);
+    private final LongAdder[] deniedCounts = newCounters(TYPES.length);
+    private final LongAdder[][] latencies = new LongAdder[TYPES.length][];
+
+    private final LessIOCapabilities capabilities;
+    private final LessIOClassCache whitelistCache;
+    private final LessIOClassCache testrunnerCache;
+    private final LessIODecisionCache<String> pathCache;
+    private final LessIODecisionCache<?> decisionCache;
+
+    LessIOStatistics(final LessIOCapabilities capabilities,
+                     final LessIOClassCache whitelistCache,
+                     final LessIOClassCache testrunnerCache,
+                     final LessIODecisionCache<String> pathCache,
+                     final LessIODecisionCache<?> decisionCache)
+    {
+        this.capabilities = capabilities;
+        this.whitelistCache = whitelistCache;
+        this.testrunnerCache = testrunnerCache;
+        this.pathCache = pathCache;
+        this.decisionCache = decisionCache;
+
+        for (int i = 0; i < TYPES.length; i++) {
+            latencies[i] = newCounters(BUCKET_COUNT);
+        }
+    }
+
+    /**
+     * @return the start time of a check, 0 if no statistics are collected.
+     */
+    static long start()
+    {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    void record(final LessIOOperation.Type type, final boolean allowed, final long startNanos)
+    {
+        final int index = type.ordinal();
+        (allowed ? allowedCounts : deniedCounts)[index].increment();
+
+        final long nanos = System.nanoTime() - startNanos;
+        final int bucket = Math.max(0, Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(nanos) - FIRST_BUCKET_SHIFT));
+        latencies[index][bucket].increment();
+    }
+
+    /**
+     * Registers the statistics with the platform MBean server on a background thread, replacing any statistics
+     * registered with the same name. Starting the MBean server takes long enough to notice at startup.
+     */
+    void register(final String name)
+    {
+        final Thread registration = new Thread(() -> {
+            try {
+                final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                final ObjectName objectName = new ObjectName(format("org.kitei.testing.lessio:type=Statistics,name=%s", ObjectName.quote(name)));
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+                server.registerMBean(new StandardMBean(this, LessIOStatisticsMXBean.class, true), objectName);
+            }
+            catch (final JMException | RuntimeException e) {
+                System.err.println(format("Could not register the LessIO statistics: %s", e));
+            }
+        }, "lessio-statistics-registration");
+        registration.setDaemon(true);
+        registration.start();
+    }
+
+    @Override
+    public Map<String, Long> getCheckCounts()
+    {
+        final Map<String, Long> counts = new LinkedHashMap<>();
+        for (final LessIOOperation.Type type : TYPES) {
+            counts.put(type.name(), allowedCounts[type.ordinal()].sum() + deniedCounts[type.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getAllowedCounts()
+    {
+        return toMap(allowedCounts);
+    }
+
+    @Override
+    public Map<String, Long> getDeniedCounts()
+    {
+        return toMap(deniedCounts);
+    }
+
+    @Override
+    public long getAllowedCount()
+    {
+        return sum(allowedCounts);
+    }
+
+    @Override
+    public long getDeniedCount()
+    {
+        return sum(deniedCounts);
+    }
+
+    @Override
+    public long[] getLatencyBucketUpperBounds()
+    {
+        final long[] upperBounds = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+            upperBounds[i] = 1L << (FIRST_BUCKET_SHIFT + i);
+        }
+        upperBounds[BUCKET_COUNT - 1] = Long.MAX_VALUE;
+        return upperBounds;
+    }
+
+    @Override
+    public Map<String, long[]> getLatencyHistograms()
+    {
+        final Map<String, long[]> histograms = new LinkedHashMap<>();
+        for (final LessIOOperation.Type type : TYPES) {
+            final LongAdder[] buckets = latencies[type.ordinal()];
+            final long[] histogram = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                histogram[i] = buckets[i].sum();
+            }
+            histograms.put(type.name(), histogram);
+        }
+        return histograms;
+    }
+
+    @Override
+    public long getClassCacheSize()
+    {
+        return capabilities.getComputeCount();
+    }
+
+    @Override
+    public long getClassCacheHitCount()
+    {
+        // A mask may be computed by a lookup that has not been counted yet.
+        return Math.max(0, capabilities.getLookupCount() - capabilities.getComputeCount());
+    }
+
+    @Override
+    public double getClassCacheHitRate()
+    {
+        return hitRate(getClassCacheHitCount(), capabilities.getLookupCount());
+    }
+
+    @Override
+    public long getWhitelistClassifiedCount()
+    {
+        return whitelistCache.getComputeCount();
+    }
+
+    @Override
+    public long getTestrunnerClassifiedCount()
+    {
+        return testrunnerCache.getComputeCount();
+    }
+
+    @Override
+    public long getPathCacheSize()
+    {
+        return pathCache.size();
+    }
+
+    @Override
+    public long getPathCacheMaximumSize()
+    {
+        return pathCache.getMaximumSize();
+    }
+
+    @Override
+    public double getPathCacheHitRate()
+    {
+        final long hits = pathCache.getHitCount();
+        return hitRate(hits, hits + pathCache.getMissCount());
+    }
+
+    @Override
+    public long getPathCacheEvictionCount()
+    {
+        return pathCache.getEvictionCount();
+    }
+
+    @Override
+    public long getPathCacheInvalidationCount()
+    {
+        return pathCache.getInvalidationCount();
+    }
+
+    @Override
+    public long getDecisionCacheSize()
+    {
+        return decisionCache.size();
+    }
+
+    @Override
+    public double getDecisionCacheHitRate()
+    {
+        final long hits = decisionCache.getHitCount();
+        return hitRate(hits, hits + decisionCache.getMissCount());
+    }
+
+    @Override
+    public long getDecisionCacheEvictionCount()
+    {
+        return decisionCache.getEvictionCount();
+    }
+
+    private static double hitRate(final long hits, final long lookups)
+    {
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    private static LongAdder[] newCounters(final int size)
+    {
+        final LongAdder[] counters = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+
+    private static long sum(final LongAdder[] counters)
+    {
+        long sum = 0;
+        for (final LongAdder counter : counters) {
+            sum += counter.sum();
+        }
+        return sum;
+    }
+
+    private static Map<String, Long> toMap(final LongAdder[] counters)
+    {
+        final Map<String, Long> counts = new LinkedHashMap<>();
+        for (final LessIOOperation.Type type : TYPES) {
+            counts.put(type.name(), counters[type.ordinal()].sum());
+        }
+        return counts;
+    }
+}
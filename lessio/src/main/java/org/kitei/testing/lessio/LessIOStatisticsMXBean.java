@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import java.util.Map;
+
+/**
+ * Counters, latencies and cache statistics of a {@link LessIOEngine}. Maps are keyed by the
+ * {@link LessIOOperation.Type} name.
+ */
+public interface LessIOStatisticsMXBean
+{
+    Map<String, Long> getCheckCounts();
+
+    Map<String, Long> getAllowedCounts();
+
+    Map<String, Long> getDeniedCounts();
+
+    long getAllowedCount();
+
+    long getDeniedCount();
+
+    /**
+     * The upper bound of each latency histogram bucket in nanoseconds. The last bucket is unbounded.
+     */
+    long[] getLatencyBucketUpperBounds();
+
+    /**
+     * For each operation, the number of checks per latency bucket.
+     */
+    Map<String, long[]> getLatencyHistograms();
+
+    /**
+     * The number of classes whose capabilities (Allow* annotations, whitelisted and testrunner class) have been
+     * computed. Classes that have been unloaded since are still counted.
+     */
+    long getClassCacheSize();
+
+    /**
+     * The number of capability lookups, one per stack frame, that found the capabilities already computed.
+     * Every lookup of a whitelisted or testrunner class goes through these capabilities.
+     */
+    long getClassCacheHitCount();
+
+    double getClassCacheHitRate();
+
+    /**
+     * The number of classes that have been classified as whitelisted or not, including the enclosing classes,
+     * interfaces and superclasses looked at on the way. Classes that have been unloaded since are still counted.
+     */
+    long getWhitelistClassifiedCount();
+
+    /**
+     * The number of classes that have been classified as testrunner classes or not, counted like
+     * {@link #getWhitelistClassifiedCount()}.
+     */
+    long getTestrunnerClassifiedCount();
+
+    long getPathCacheSize();
+
+    long getPathCacheMaximumSize();
+
+    double getPathCacheHitRate();
+
+    long getPathCacheEvictionCount();
+
+    long getPathCacheInvalidationCount();
+
+    /**
+     * The number of cached decisions for the test classes bound to test threads.
+     */
+    long getDecisionCacheSize();
+
+    double getDecisionCacheHitRate();
+
+    long getDecisionCacheEvictionCount();
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import java.io.FileDescriptor;
+import java.util.Objects;
+
+/**
+ * The decisions of the Allow* annotations of the test classes that are bound to test threads (see
+ * {@link LessIOTestThreads}), keyed by test class, operation and resource. A test that repeats an operation
+ * is decided with a map lookup instead of evaluating its path globs or endpoint rules again.
+ *
+ * The keys do not hold the test class but a token attached to it through a {@link ClassValue}, so the cache
+ * does not keep test classes and their class loaders alive. The decisions of an unloaded class stay in the
+ * cache until they are evicted, nothing can look them up anymore.
+ */
+final class LessIOTestClassDecisions
+{
+    private static final ClassValue<Object> TOKENS = new ClassValue<Object>() {
+        @Override
+        protected Object computeValue(final Class<?> type)
+        {
+            // Must not reference the class.
+            return new Object();
+        }
+    };
+
+    private final LessIODecisionCache<Key> decisions;
+
+    // A lookup does not allocate, only a stored decision gets its own key.
+    private final ThreadLocal<Key> lookupKeys = ThreadLocal.withInitial(Key::new);
+
+    LessIOTestClassDecisions(final int maximumSize)
+    {
+        this.decisions = new LessIODecisionCache<>(maximumSize);
+    }
+
+    /**
+     * @return the cached decision or null if there is none for this version.
+     */
+    Boolean get(final Class<?> testClass, final LessIOOperation.Type type, final Object resource, final int port, final Object version)
+    {
+        final Key key = lookupKeys.get().reset(TOKENS.get(testClass), type, resource, port);
+        try {
+            return decisions.get(key, version);
+        }
+        finally {
+            key.reset(null, null, null, 0);
+        }
+    }
+
+    void put(final Class<?> testClass, final LessIOOperation.Type type, final Object resource, final int port, final Object version, final boolean decision)
+    {
+        decisions.put(new Key().reset(TOKENS.get(testClass), type, resource, port), version, decision);
+    }
+
+    LessIODecisionCache<?> getCache()
+    {
+        return decisions;
+    }
+
+    private static final class Key
+    {
+        private Object testClassToken;
+        private LessIOOperation.Type type;
+        private Object resource;
+        private int port;
+        private int hashCode;
+
+        private Key reset(final Object testClassToken, final LessIOOperation.Type type, final Object resource, final int port)
+        {
+            this.testClassToken = testClassToken;
+            this.type = type;
+            // The file descriptor rules do not look at the descriptor, every stream has its own.
+            this.resource = resource instanceof FileDescriptor ? null : resource;
+            this.port = port;
+            this.hashCode = 31 * (31 * (31 * System.identityHashCode(testClassToken) + System.identityHashCode(type)) + Objects.hashCode(this.resource)) + port;
+            return this;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            final Key that = (Key) other;
+            return testClassToken == that.testClassToken && type == that.type && port == that.port && Objects.equals(resource, that.resource);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import java.util.Arrays;
+
+/**
+ * Marks the threads that currently run tests. If every test is marked, only a thread that runs a test can
+ * have a test runner class on its stack, so a check on any other thread is allowed without walking the stack.
+ *
+ * A test runner integration can also bind the test class to the thread. Its Allow* annotations are resolved
+ * once and checked before the stack is walked. If they allow an operation, the stack is not walked at all.
+ * Otherwise the stack is walked as usual, but the thread counts as running a test even without a test runner
+ * class on the stack.
+ *
+ * A thread that is started by a marked thread is marked for its whole life, e.g. the thread that runs a test
+ * with a timeout. Checks on it walk the stack as usual. The test class is not passed on, such a thread may
+ * outlive its test.
+ *
+ * Skipping is opt-in. A test runner integration that sees every test of the JVM (e.g. the JUnit
+ * <code>LessIORunListener</code>) turns it on with {@link #markAllTests()}. Until then, every check on a
+ * thread outside of a marked scope walks the stack. An integration that only sees some of the tests or some
+ * of the test code only marks its own scopes, e.g. the JUnit 5 <code>LessIOExtension</code> (tests of other
+ * engines) or the TestNG <code>LessIOInvokedMethodListener</code> (data providers and factories). Once skipping is on, code that runs
+ * test code outside of the marked scope (e.g. class level fixtures that the integration does not see) is no
+ * longer checked.
+ */
+public final class LessIOTestThreads
+{
+    private static final ThreadLocal<TestScopes> TEST_SCOPES = new InheritedTestScopes();
+
+    private static volatile boolean inUse = false;
+    private static volatile boolean allTestsMarked = false;
+
+    private LessIOTestThreads()
+    {
+        throw new AssertionError("do not instantiate");
+    }
+
+    /**
+     * The current thread starts to run a test. Calls may nest, every call must be matched by {@link #exit()}.
+     */
+    public static void enter()
+    {
+        enter(null);
+    }
+
+    /**
+     * The current thread starts to run a test of the given class. The innermost bound class is checked first.
+     */
+    public static void enter(final Class<?> testClass)
+    {
+        if (testClass != null) {
+            LessIOClassProfile.forClass(testClass);
+        }
+
+        TEST_SCOPES.get().push(testClass);
+        if (!inUse) {
+            inUse = true;
+        }
+    }
+
+    public static void exit()
+    {
+        TEST_SCOPES.get().pop();
+    }
+
+    /**
+     * The caller marks every thread that runs a test in this JVM, from now on checks on all other threads
+     * return without walking the stack. Must not be called by an integration that may miss some tests.
+     */
+    public static void markAllTests()
+    {
+        if (!allTestsMarked) {
+            allTestsMarked = true;
+        }
+    }
+
+    /**
+     * True if every test is marked and the current thread does not run a test.
+     */
+    static boolean isOutsideOfTest()
+    {
+        return allTestsMarked && TEST_SCOPES.get().depth == 0;
+    }
+
+    /**
+     * The innermost test class bound to the current thread, null if there is none.
+     */
+    static Class<?> getTestClass()
+    {
+        return inUse ? TEST_SCOPES.get().testClass() : null;
+    }
+
+    private static final class InheritedTestScopes extends InheritableThreadLocal<TestScopes>
+    {
+        @Override
+        protected TestScopes initialValue()
+        {
+            return new TestScopes();
+        }
+
+        @Override
+        protected TestScopes childValue(final TestScopes parentScopes)
+        {
+            final TestScopes scopes = new TestScopes();
+            if (parentScopes.depth > 0) {
+                scopes.push(null);
+            }
+            return scopes;
+        }
+    }
+
+    private static final class TestScopes
+    {
+        private Class<?>[] testClasses = new Class<?>[4];
+        private int depth = 0;
+
+        private void push(final Class<?> testClass)
+        {
+            if (depth == testClasses.length) {
+                testClasses = Arrays.copyOf(testClasses, depth * 2);
+            }
+            testClasses[depth++] = testClass;
+        }
+
+        private void pop()
+        {
+            if (depth > 0) {
+                testClasses[--depth] = null;
+            }
+        }
+
+        private Class<?> testClass()
+        {
+            for (int i = depth - 1; i >= 0; i--) {
+                if (testClasses[i] != null) {
+                    return testClasses[i];
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -17,17 +17,16 @@ import static java.lang.String.format;
 import static java.util.Collections.newSetFromMap;
 import static java.util.Collections.unmodifiableList;
 
-import java.lang.annotation.Annotation;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 final class LessIOUtils
@@ -75,150 +74,135 @@ final class LessIOUtils
     static PathMatcher createGlobMatcher(final Path path)
     {
         checkNotNull(path, "path is null");
-        return FileSystems.getDefault().getPathMatcher("glob:" + path.toString());
+        return createGlobMatcher(path.toString());
     }
 
-    static List<String> getCurrentClassPath()
+    static PathMatcher createGlobMatcher(final String pattern)
     {
-        return unmodifiableList(Arrays.asList(System.getProperty("java.class.path", "").split(PATH_SEPARATOR)));
+        checkNotNull(pattern, "pattern is null");
+        return FileSystems.getDefault().getPathMatcher("glob:" + pattern);
     }
 
     /**
-     * Determines whether a given class, an interface implemented by that class or
-     * any enclosing class is in the whitelist cache. If yes, that class is added to
-     * the cache as well. The cache must be seeded from the outside, with an empty cache this
-     * method will always return false;
+     * A single matcher for all patterns. The patterns become the alternatives of one glob group, so the
+     * file system compiles them into one regular expression. Groups in a pattern are expanded first, a
+     * glob group can not be nested.
      */
-    static boolean matchesWhitelistCache(final Class<?> clazz, final Map<Class<?>, Boolean> clazzCache)
+    static PathMatcher createGlobMatcher(final Collection<String> patterns)
     {
-        Boolean result = null;
-        Class<?> currentClazz = clazz;
-
-        lookForClass:
-        while (result == null && currentClazz != null) {
-            result = clazzCache.get(currentClazz);
-            if (result != null) {
-                if (currentClazz == clazz) {
-                    // This is the result of a direct class lookup. So
-                    // it is present in the cache and the method can exit
-                    // directly
-                    return result;
-                }
-                else {
-                    break lookForClass;
-                }
-            }
-
-            // Check enclosing classes for the current class first.
-            Class<?> enclosingClass = currentClazz.getEnclosingClass();
-            while (enclosingClass != null) {
-                if (matchesWhitelistCache(enclosingClass, clazzCache)) {
-                    result = Boolean.TRUE;
-                    break lookForClass;
-                }
+        checkNotNull(patterns, "patterns is null");
+        if (patterns.isEmpty()) {
+            throw new IllegalArgumentException("no patterns");
+        }
+        if (patterns.size() == 1) {
+            return createGlobMatcher(patterns.iterator().next());
+        }
 
-                enclosingClass = enclosingClass.getEnclosingClass();
-            }
+        final StringBuilder combined = new StringBuilder("{");
+        boolean first = true;
+        for (final String pattern : patterns) {
+            // Report syntax errors for the pattern itself, the scanning below relies on a valid glob.
+            createGlobMatcher(pattern);
 
-            // Also look at the interfaces that a class implements.
-            // Some of the test runner classes (e.g. TestRule) are actual interfaces.
-            final Class<?>[] interfaces = currentClazz.getInterfaces();
-            for (final Class<?> interfaceClass : interfaces) {
-                if (matchesWhitelistCache(interfaceClass, clazzCache)) {
-                    result = Boolean.TRUE;
-                    break lookForClass;
+            for (final String alternative : expandGlobGroups(pattern)) {
+                if (!first) {
+                    combined.append(',');
                 }
+                appendGlobGroupAlternative(combined, alternative);
+                first = false;
             }
-
-            currentClazz = currentClazz.getSuperclass();
         }
-
-        if (result == null) {
-            result = Boolean.FALSE;
-        }
-
-        clazzCache.put(clazz, result);
-        return result;
+        return FileSystems.getDefault().getPathMatcher("glob:" + combined.append('}'));
     }
 
-    /**
-     * Check whether a given class has one of the annotations listed. Annotations
-     * must be either on the class itself, on a superclass or any enclosing class.
-     */
-    @SafeVarargs
-    static boolean hasAnnotations(final Class<?> clazz, final Class<? extends Annotation> ... annotations)
+    private static List<String> expandGlobGroups(final String pattern)
     {
-        checkNotNull(clazz, "clazz is null");
-
-        if (annotations.length == 0) {
-            throw new IllegalArgumentException("at least one annotation must be present");
-        }
-
-        // Check class and parent classes.
-        Class<?> currentClazz = clazz;
-        while (currentClazz != null) {
-            Class<?> enclosingClass = currentClazz.getEnclosingClass();
-
-            for (final Class<? extends Annotation> annotation : annotations) {
-                if (currentClazz.getAnnotation(annotation) != null) {
-                    return true;
-                }
-
-                while (enclosingClass != null) {
-                    if (hasAnnotations(enclosingClass, annotations)) {
-                        return true;
+        int i = 0;
+        while (i < pattern.length()) {
+            final char c = pattern.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            }
+            else if (c == '[') {
+                i = skipGlobClass(pattern, i);
+            }
+            else if (c == '{') {
+                final List<String> alternatives = new ArrayList<>();
+                int start = i + 1;
+                int j = start;
+                while (true) {
+                    final char g = pattern.charAt(j);
+                    if (g == '\\') {
+                        j += 2;
+                    }
+                    else if (g == '[') {
+                        j = skipGlobClass(pattern, j);
+                    }
+                    else if (g == ',' || g == '}') {
+                        alternatives.add(pattern.substring(start, j));
+                        start = j + 1;
+                        if (g == '}') {
+                            break;
+                        }
+                        j++;
+                    }
+                    else {
+                        j++;
                     }
-                    enclosingClass = enclosingClass.getEnclosingClass();
                 }
 
-                final Class<?>[] interfaces = currentClazz.getInterfaces();
-                for (final Class<?> interfaceClass : interfaces) {
-                    if (hasAnnotations(interfaceClass, annotations)) {
-                        return true;
+                final String prefix = pattern.substring(0, i);
+                final List<String> expanded = new ArrayList<>();
+                for (final String suffix : expandGlobGroups(pattern.substring(j + 1))) {
+                    for (final String alternative : alternatives) {
+                        expanded.add(prefix + alternative + suffix);
                     }
                 }
+                return expanded;
+            }
+            else {
+                i++;
             }
-
-            currentClazz = currentClazz.getSuperclass();
         }
-
-        return false;
+        return Collections.singletonList(pattern);
     }
 
-    static <T extends Annotation> T findAnnotation(final Class<?> clazz, final Class<T> annotation)
+    private static void appendGlobGroupAlternative(final StringBuilder combined, final String pattern)
     {
-        checkNotNull(clazz, "clazz is null");
-        checkNotNull(annotation, "annotation is null");
-
-        // Check class and parent classes.
-        Class<?> currentClazz = clazz;
-        while (currentClazz != null) {
-            T a = currentClazz.getAnnotation(annotation);
-            if (a != null) {
-                return a;
+        int i = 0;
+        while (i < pattern.length()) {
+            final char c = pattern.charAt(i);
+            if (c == '\\') {
+                combined.append(pattern, i, i + 2);
+                i += 2;
             }
-
-            Class<?> enclosingClass = currentClazz.getEnclosingClass();
-
-            while (enclosingClass != null) {
-                a = findAnnotation(enclosingClass, annotation);
-                if (a != null) {
-                    return a;
-                }
-                enclosingClass = enclosingClass.getEnclosingClass();
+            else if (c == '[') {
+                final int end = skipGlobClass(pattern, i);
+                combined.append(pattern, i, end);
+                i = end;
             }
-
-            final Class<?>[] interfaces = currentClazz.getInterfaces();
-            for (final Class<?> interfaceClass : interfaces) {
-                a = findAnnotation(interfaceClass, annotation);
-                if (a != null) {
-                    return a;
+            else {
+                if (c == ',' || c == '}') {
+                    // Literal outside of a group, but they would end the alternative.
+                    combined.append('\\');
                 }
+                combined.append(c);
+                i++;
             }
-
-            currentClazz = currentClazz.getSuperclass();
         }
+    }
 
-        return null;
+    /**
+     * A glob character class ends at the first ']', there is no escape inside of it.
+     */
+    private static int skipGlobClass(final String pattern, final int start)
+    {
+        final int end = pattern.indexOf(']', start + 1);
+        return end < 0 ? pattern.length() : end + 1;
+    }
+
+    static List<String> getCurrentClassPath()
+    {
+        return unmodifiableList(Arrays.asList(System.getProperty("java.class.path", "").split(PATH_SEPARATOR)));
     }
 }
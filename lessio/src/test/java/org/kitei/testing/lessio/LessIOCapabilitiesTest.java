@@ -0,0 +1,187 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static java.util.Arrays.asList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class LessIOCapabilitiesTest
+{
+    @AllowExternalProcess
+    @AllowDNSResolution
+    private static class Annotated
+    {
+        private class Inner
+        {
+        }
+    }
+
+    @AllowAll
+    private static class Runner
+    {
+    }
+
+    @AllowLocalFileAccess(paths = { "%FD%", "/tmp/x" })
+    private static class FileDescriptors
+    {
+    }
+
+    private static class Plain
+    {
+    }
+
+    private static final class CountingPredicate implements LessIOPredicate
+    {
+        private final long granting;
+        private final long required;
+        private final AtomicInteger checks = new AtomicInteger();
+
+        private CountingPredicate(final long granting, final long required)
+        {
+            this.granting = granting;
+            this.required = required;
+        }
+
+        @Override
+        public boolean check(final Class<?> clazz)
+        {
+            checks.incrementAndGet();
+            return true;
+        }
+
+        @Override
+        public long getGrantingCapabilities()
+        {
+            return granting;
+        }
+
+        @Override
+        public long getRequiredCapabilities()
+        {
+            return required;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "counting";
+        }
+    }
+
+    private final LessIOCapabilities capabilities = new LessIOCapabilities(
+        new LessIOClassCache(Collections.<Class<?>>singleton(Plain.class)),
+        new LessIOClassCache(Collections.<Class<?>>singleton(Runner.class)),
+        true);
+
+    @Test
+    public void testAnnotations()
+    {
+        assertEquals(LessIOCapabilities.EXTERNAL_PROCESS | LessIOCapabilities.DNS_RESOLUTION | LessIOCapabilities.ANY_CLASS,
+            capabilities.of(Annotated.class));
+        assertEquals(LessIOCapabilities.LOCAL_FILE_ACCESS | LessIOCapabilities.LOCAL_FILE_DESCRIPTORS | LessIOCapabilities.ANY_CLASS,
+            capabilities.of(FileDescriptors.class));
+        assertEquals(LessIOCapabilities.ANY_CLASS, capabilities.of(Object.class));
+    }
+
+    @Test
+    public void testEnclosingClassAnnotations()
+    {
+        assertEquals(capabilities.of(Annotated.class), capabilities.of(Annotated.Inner.class));
+    }
+
+    @Test
+    public void testWhitelistedAndTestrunnerClasses()
+    {
+        assertEquals(LessIOCapabilities.WHITELISTED | LessIOCapabilities.ANY_CLASS, capabilities.of(Plain.class));
+        assertEquals(LessIOCapabilities.TESTRUNNER | LessIOCapabilities.ALLOW_ALL | LessIOCapabilities.ANY_CLASS, capabilities.of(Runner.class));
+    }
+
+    @Test
+    public void testMasksArePerEngine()
+    {
+        final LessIOCapabilities other = new LessIOCapabilities(
+            new LessIOClassCache(Collections.<Class<?>>emptyList()),
+            new LessIOClassCache(asList(Plain.class, Annotated.class)),
+            false);
+
+        assertEquals(LessIOCapabilities.TESTRUNNER | LessIOCapabilities.ANY_CLASS, other.of(Plain.class));
+        assertTrue((other.of(Annotated.class) & LessIOCapabilities.TESTRUNNER) != 0);
+        assertFalse((capabilities.of(Annotated.class) & LessIOCapabilities.TESTRUNNER) != 0);
+    }
+
+    @Test
+    public void testLookupCounts()
+    {
+        capabilities.of(Annotated.class);
+        capabilities.of(Annotated.class);
+        capabilities.of(Annotated.Inner.class);
+
+        assertEquals(3, capabilities.getLookupCount());
+        assertEquals(2, capabilities.getComputeCount());
+    }
+
+    @Test
+    public void testLookupsAreOnlyCountedWhenEnabled()
+    {
+        final LessIOCapabilities other = new LessIOCapabilities(
+            new LessIOClassCache(Collections.<Class<?>>emptyList()),
+            new LessIOClassCache(Collections.<Class<?>>emptyList()),
+            false);
+
+        other.of(Annotated.class);
+        other.of(Annotated.class);
+
+        assertEquals(0, other.getLookupCount());
+        assertEquals(1, other.getComputeCount());
+    }
+
+    @Test
+    public void testGrantingCapabilitiesSkipCheck() throws Exception
+    {
+        final CountingPredicate predicate = new CountingPredicate(LessIOCapabilities.EXTERNAL_PROCESS, 0L);
+
+        assertTrue(LessIOCapabilities.isAllowed(predicate, Annotated.class, capabilities.of(Annotated.class)));
+        assertFalse(LessIOCapabilities.isAllowed(predicate, Object.class, capabilities.of(Object.class)));
+        assertEquals(0, predicate.checks.get());
+    }
+
+    @Test
+    public void testRequiredCapabilitiesGuardCheck() throws Exception
+    {
+        final CountingPredicate predicate = new CountingPredicate(0L, LessIOCapabilities.LOCAL_FILE_ACCESS);
+
+        assertFalse(LessIOCapabilities.isAllowed(predicate, Annotated.class, capabilities.of(Annotated.class)));
+        assertEquals(0, predicate.checks.get());
+
+        assertTrue(LessIOCapabilities.isAllowed(predicate, FileDescriptors.class, capabilities.of(FileDescriptors.class)));
+        assertEquals(1, predicate.checks.get());
+    }
+
+    @Test
+    public void testAnyClassIsAlwaysChecked() throws Exception
+    {
+        final CountingPredicate predicate = new CountingPredicate(0L, LessIOCapabilities.ANY_CLASS);
+
+        assertTrue(LessIOCapabilities.isAllowed(predicate, Object.class, capabilities.of(Object.class)));
+        assertEquals(1, predicate.checks.get());
+    }
+}
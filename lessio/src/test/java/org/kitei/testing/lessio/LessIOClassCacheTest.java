@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static java.util.Arrays.asList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class LessIOClassCacheTest
+{
+    private interface Seed
+    {
+    }
+
+    private static class SeedClass
+    {
+        private class Inner
+        {
+        }
+    }
+
+    private static class SeedSubclass extends SeedClass
+    {
+    }
+
+    private static class SeedImplementation implements Seed
+    {
+    }
+
+    private static class Other
+    {
+    }
+
+    private final LessIOClassCache cache = new LessIOClassCache(asList(Seed.class, SeedClass.class));
+
+    @Test
+    public void testSeedClasses()
+    {
+        assertTrue(cache.matches(Seed.class));
+        assertTrue(cache.matches(SeedClass.class));
+    }
+
+    @Test
+    public void testRelatedClasses()
+    {
+        assertTrue(cache.matches(SeedSubclass.class));
+        assertTrue(cache.matches(SeedImplementation.class));
+        assertTrue(cache.matches(SeedClass.Inner.class));
+    }
+
+    @Test
+    public void testOtherClasses()
+    {
+        assertFalse(cache.matches(Other.class));
+        assertFalse(cache.matches(Object.class));
+        assertFalse(new LessIOClassCache(Collections.<Class<?>>emptyList()).matches(SeedClass.class));
+    }
+
+    @Test
+    public void testResultIsCached()
+    {
+        assertTrue(cache.matches(SeedSubclass.class));
+        final long computeCount = cache.getComputeCount();
+
+        assertTrue(cache.matches(SeedSubclass.class));
+        assertTrue(cache.matches(SeedClass.class));
+        assertEquals(computeCount, cache.getComputeCount());
+    }
+
+    @Test
+    public void testCachesAreIndependent()
+    {
+        final LessIOClassCache other = new LessIOClassCache(asList(Other.class));
+        assertTrue(cache.matches(SeedClass.class));
+        assertFalse(other.matches(SeedClass.class));
+        assertTrue(other.matches(Other.class));
+        assertFalse(cache.matches(Other.class));
+    }
+}
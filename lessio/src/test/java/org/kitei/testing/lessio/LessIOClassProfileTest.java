@@ -0,0 +1,158 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+public class LessIOClassProfileTest
+{
+    @AllowLocalFileAccess(paths = "/interface")
+    private interface Interface
+    {
+    }
+
+    private interface SubInterface extends Interface
+    {
+    }
+
+    @AllowLocalFileAccess(paths = "/super")
+    private static class Super
+    {
+    }
+
+    private static class SubOfSuper extends Super
+    {
+    }
+
+    private static class OtherSubOfSuper extends Super
+    {
+    }
+
+    private static class SuperAndInterface extends Super implements Interface
+    {
+    }
+
+    private static class SuperAndSubInterface extends Super implements SubInterface
+    {
+    }
+
+    @AllowLocalFileAccess(paths = "/own")
+    private static class Own extends Super implements Interface
+    {
+    }
+
+    @AllowLocalFileAccess(paths = "/outer")
+    @AllowExternalProcess
+    private static class Outer
+    {
+        private static class Nested extends Super implements Interface
+        {
+        }
+
+        @AllowLocalFileAccess(paths = "/own")
+        private class Inner extends Super
+        {
+            private class InnerInner
+            {
+            }
+        }
+    }
+
+    private static class Plain
+    {
+    }
+
+    @Test
+    public void testOwnAnnotationFirst()
+    {
+        assertAllows(Own.class, "/own");
+        assertAllows(Outer.Inner.class, "/own");
+    }
+
+    @Test
+    public void testOuterClassBeforeInterfacesAndSuperclass()
+    {
+        assertAllows(Outer.Nested.class, "/outer");
+        assertSame(rules(Outer.class), rules(Outer.Nested.class));
+    }
+
+    @Test
+    public void testInnermostOuterClassFirst()
+    {
+        assertAllows(Outer.Inner.InnerInner.class, "/own");
+        assertSame(rules(Outer.Inner.class), rules(Outer.Inner.InnerInner.class));
+        // Only the Allow* annotations that the nearer classes do not have come from further out.
+        assertTrue(LessIOClassProfile.forClass(Outer.Inner.InnerInner.class).isAllowExternalProcess());
+    }
+
+    @Test
+    public void testInterfacesBeforeSuperclass()
+    {
+        assertAllows(SuperAndInterface.class, "/interface");
+        assertAllows(SuperAndSubInterface.class, "/interface");
+        assertSame(rules(Interface.class), rules(SuperAndInterface.class));
+        assertSame(rules(Interface.class), rules(SuperAndSubInterface.class));
+    }
+
+    @Test
+    public void testSuperclass()
+    {
+        assertAllows(SubOfSuper.class, "/super");
+        assertSame(rules(Super.class), rules(SubOfSuper.class));
+    }
+
+    @Test
+    public void testInheritedAnnotationIsCompiledOnce()
+    {
+        assertSame(rules(SubOfSuper.class), rules(OtherSubOfSuper.class));
+        assertSame(rules(Super.class), rules(OtherSubOfSuper.class));
+
+        // The same paths declared on another class are compiled for that class.
+        assertNotSame(rules(Own.class), rules(Outer.Inner.class));
+    }
+
+    @Test
+    public void testNoAnnotation()
+    {
+        assertNull(rules(Plain.class));
+        assertFalse(LessIOClassProfile.forClass(Plain.class).isAllowExternalProcess());
+        assertNull(rules(Object.class));
+    }
+
+    private static LessIOPathRules rules(final Class<?> clazz)
+    {
+        return LessIOClassProfile.forClass(clazz).getLocalFileAccessRules();
+    }
+
+    private static void assertAllows(final Class<?> clazz, final String allowed)
+    {
+        final LessIOPathRules rules = rules(clazz);
+        for (final String path : new String[] {"/own", "/outer", "/interface", "/super"}) {
+            if (path.equals(allowed)) {
+                assertTrue(clazz + " does not allow " + path, rules.matches(Paths.get(path), false));
+            }
+            else {
+                assertFalse(clazz + " allows " + path, rules.matches(Paths.get(path), false));
+            }
+        }
+    }
+}
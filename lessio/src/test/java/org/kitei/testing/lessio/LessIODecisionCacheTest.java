@@ -0,0 +1,140 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LessIODecisionCacheTest
+{
+    private final Object version = new Object();
+
+    @Test
+    public void testPositiveAndNegativeDecisions()
+    {
+        final LessIODecisionCache<String> cache = new LessIODecisionCache<>(16);
+        decide(cache, "/allowed", version, true);
+        decide(cache, "/denied", version, false);
+
+        assertEquals(Boolean.TRUE, cache.get("/allowed", version));
+        assertEquals(Boolean.FALSE, cache.get("/denied", version));
+        assertNull(cache.get("/unknown", version));
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void testEviction()
+    {
+        final LessIODecisionCache<Integer> cache = new LessIODecisionCache<>(16);
+        for (int i = 0; i < 16; i++) {
+            decide(cache, i, version, true);
+        }
+        assertEquals(16, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+
+        // A full cache evicts an eighth of its entries before it stores the next one.
+        decide(cache, 16, version, true);
+        assertEquals(15, cache.size());
+        assertEquals(2, cache.getEvictionCount());
+        assertTrue(cache.contains(16, version));
+    }
+
+    @Test
+    public void testCacheSizeOne()
+    {
+        final LessIODecisionCache<Integer> cache = new LessIODecisionCache<>(1);
+        decide(cache, 1, version, true);
+        decide(cache, 2, version, false);
+
+        assertEquals(1, cache.size());
+        assertFalse(cache.contains(1, version));
+        assertEquals(Boolean.FALSE, cache.get(2, version));
+    }
+
+    @Test
+    public void testNewVersionDropsDecisions()
+    {
+        final LessIODecisionCache<String> cache = new LessIODecisionCache<>(16);
+        decide(cache, "/path", version, true);
+        assertEquals(Boolean.TRUE, cache.get("/path", version));
+
+        final Object newVersion = new Object();
+        assertNull(cache.get("/path", newVersion));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getInvalidationCount());
+
+        // The old version does not come back either.
+        assertNull(cache.get("/path", version));
+    }
+
+    @Test
+    public void testVersionsAreComparedByIdentity()
+    {
+        final LessIODecisionCache<String> cache = new LessIODecisionCache<>(16);
+        final String classpath = new String("a.jar");
+        decide(cache, "/path", classpath, true);
+
+        assertNull(cache.get("/path", new String("a.jar")));
+    }
+
+    @Test
+    public void testDecisionForStaleVersionIsNotStored()
+    {
+        final LessIODecisionCache<String> cache = new LessIODecisionCache<>(16);
+        final Object newVersion = new Object();
+
+        // A decision computed against the old version while another thread moved on to the new one.
+        cache.get("/path", version);
+        cache.get("/other", newVersion);
+        cache.put("/path", version, true);
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get("/path", newVersion));
+        assertFalse(cache.contains("/path", version));
+    }
+
+    @Test
+    public void testContainsDoesNotCount()
+    {
+        final LessIODecisionCache<String> cache = new LessIODecisionCache<>(16);
+        decide(cache, "/path", version, true);
+
+        assertTrue(cache.contains("/path", version));
+        assertFalse(cache.contains("/other", version));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize()
+    {
+        new LessIODecisionCache<String>(0);
+    }
+
+    /**
+     * Like the callers, looks up the decision first and stores it on a miss.
+     */
+    private static <K> void decide(final LessIODecisionCache<K> cache, final K key, final Object version, final boolean decision)
+    {
+        if (cache.get(key, version) == null) {
+            cache.put(key, version, decision);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LessIOEndpointRulesTest
+{
+    @AllowNetworkAccess(endpoints = {"example.com:80", "example.com:443", "localhost:*", "*:8080", "ephemeral.com:0"})
+    private static class Endpoints
+    {
+    }
+
+    @AllowNetworkAccess(endpoints = {"*:*"})
+    private static class AnyEndpoint
+    {
+    }
+
+    @AllowNetworkAccess(endpoints = {"example.com", "example.com:", ":80", "example.com:80:81", "example.com:http",
+                                     "example.com:08080", "example.com:+81", "example.com:-1", "example.com:99999999999",
+                                     "[::1]:80", "example.com: 82"})
+    private static class Malformed
+    {
+    }
+
+    private static LessIOEndpointRules rules(final Class<?> clazz)
+    {
+        return LessIOEndpointRules.compile(clazz.getAnnotation(AllowNetworkAccess.class));
+    }
+
+    @Test
+    public void testHostAndPort()
+    {
+        final LessIOEndpointRules rules = rules(Endpoints.class);
+
+        assertTrue(rules.matches("example.com", 80, false));
+        assertTrue(rules.matches("example.com", 443, false));
+        assertFalse(rules.matches("example.com", 81, false));
+        assertFalse(rules.matches("example.org", 80, false));
+        assertFalse(rules.matches("www.example.com", 80, false));
+    }
+
+    @Test
+    public void testWildcards()
+    {
+        final LessIOEndpointRules rules = rules(Endpoints.class);
+
+        assertTrue(rules.matches("localhost", 1, false));
+        assertTrue(rules.matches("localhost", 65535, false));
+        assertTrue(rules.matches("example.com", 8080, false));
+        assertTrue(rules.matches("example.org", 8080, false));
+        assertFalse(rules.matches("example.org", 8081, false));
+
+        assertTrue(rules(AnyEndpoint.class).matches("example.org", 1234, false));
+    }
+
+    @Test
+    public void testEphemeralPorts()
+    {
+        final LessIOEndpointRules rules = rules(Endpoints.class);
+
+        assertTrue(rules.matches("ephemeral.com", 50000, true));
+        assertTrue(rules.matches("ephemeral.com", 0, true));
+        assertFalse(rules.matches("ephemeral.com", 50000, false));
+        assertFalse(rules.matches("example.com", 50000, true));
+    }
+
+    @Test
+    public void testMalformedEndpointsNeverMatch()
+    {
+        final LessIOEndpointRules rules = rules(Malformed.class);
+
+        for (final int port : new int[] {0, 1, 80, 81, 82, 8080, 50000}) {
+            assertFalse(rules.matches("example.com", port, false));
+            assertFalse(rules.matches("example.com", port, true));
+            assertFalse(rules.matches("[::1]", port, false));
+        }
+        assertFalse(rules.matches("example.com", -1, false));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+public class LessIOEngineTest
+{
+    private static final int CHECKS = 100_000;
+
+    @Test
+    public void testClasspathReadDoesNotAllocate()
+    {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        final String classpathFile = getClasspathFile();
+        assumeTrue(classpathFile != null);
+
+        final LessIOEngine engine = LessIOEngine.create();
+        final LessIOStackSource stack = LessIOStackSource.currentThread();
+
+        // Warm up until the check is compiled, escape analysis only removes allocations in compiled code.
+        for (int i = 0; i < CHECKS; i++) {
+            engine.checkRead(classpathFile, stack);
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        final long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < CHECKS; i++) {
+            engine.checkRead(classpathFile, stack);
+        }
+        final long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // Less than one byte per check, anything else would be an allocation in every check.
+        assertEquals(0, allocated / CHECKS);
+    }
+
+    /**
+     * An absolute file name below the first absolute classpath entry, null if there is none.
+     */
+    private static String getClasspathFile()
+    {
+        for (final String entry : LessIOUtils.getCurrentClassPath()) {
+            if (!entry.isEmpty()) {
+                final Path path = Paths.get(entry);
+                if (path.isAbsolute()) {
+                    return path.resolve("org/kitei/testing/lessio/Example.class").toString();
+                }
+            }
+        }
+        return null;
+    }
+}
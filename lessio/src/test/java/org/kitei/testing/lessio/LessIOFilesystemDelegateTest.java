@@ -0,0 +1,83 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static java.util.Arrays.asList;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class LessIOFilesystemDelegateTest
+{
+    private final AtomicReference<List<String>> classpathHolder = new AtomicReference<>();
+
+    private LessIOFilesystemDelegate delegate(final String ... classpath)
+    {
+        classpathHolder.set(asList(classpath));
+        return new LessIOFilesystemDelegate(LessIOContext.builder().addWhitelistedPaths(Paths.get("/dev/urandom")).build(), classpathHolder);
+    }
+
+    @Test
+    public void testClasspathEntries() throws Exception
+    {
+        final LessIOFilesystemDelegate delegate = delegate("/lib/a.jar", "/build/classes");
+
+        assertTrue(delegate.checkFilesystemAccess("/lib/a.jar"));
+        assertTrue(delegate.checkFilesystemAccess("/build/classes"));
+        assertTrue(delegate.checkFilesystemAccess("/build/classes/org/Example.class"));
+        assertTrue(delegate.checkFilesystemAccess("/dev/urandom"));
+        assertFalse(delegate.checkFilesystemAccess("/lib"));
+        assertFalse(delegate.checkFilesystemAccess("/etc/passwd"));
+    }
+
+    @Test
+    public void testClasspathEntriesMatchWholeSegments() throws Exception
+    {
+        final LessIOFilesystemDelegate delegate = delegate("/lib/a.jar", "/build/classes");
+
+        assertFalse(delegate.checkFilesystemAccess("/lib/a.jar.lock"));
+        assertFalse(delegate.checkFilesystemAccess("/build/classes-old/org/Example.class"));
+        assertFalse(delegate.checkFilesystemAccess("/build/classesX"));
+    }
+
+    @Test
+    public void testEmptyClasspathEntriesAreIgnored() throws Exception
+    {
+        final LessIOFilesystemDelegate delegate = delegate("", "/lib/a.jar", "");
+
+        assertTrue(delegate.checkFilesystemAccess("/lib/a.jar"));
+        assertFalse(delegate.checkFilesystemAccess("/etc/passwd"));
+        assertFalse(delegate.checkFilesystemAccess("relative/file"));
+    }
+
+    @Test
+    public void testClasspathChange() throws Exception
+    {
+        final LessIOFilesystemDelegate delegate = delegate("/lib/a.jar");
+        assertTrue(delegate.checkFilesystemAccess("/lib/a.jar"));
+        assertFalse(delegate.checkFilesystemAccess("/lib/b.jar"));
+        assertTrue(delegate.isCached("/lib/b.jar"));
+
+        classpathHolder.set(asList("/lib/b.jar"));
+        assertFalse(delegate.isCached("/lib/b.jar"));
+        assertFalse(delegate.checkFilesystemAccess("/lib/a.jar"));
+        assertTrue(delegate.checkFilesystemAccess("/lib/b.jar"));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class LessIOGeneratedClassesTest
+{
+    private interface Seed
+    {
+        void run();
+    }
+
+    @AllowExternalProcess
+    private static class Host
+    {
+        private static Runnable lambda()
+        {
+            return () -> { };
+        }
+
+        private static Runnable anonymous()
+        {
+            return new Runnable() {
+                @Override
+                public void run()
+                {
+                }
+            };
+        }
+    }
+
+    // Defined again as a hidden class.
+    private static class Template
+    {
+    }
+
+    @Test
+    public void testRegularClasses()
+    {
+        assertFalse(LessIOGeneratedClasses.isGenerated(Host.class));
+        assertSame(LessIOGeneratedClassesTest.class, LessIOGeneratedClasses.getOuterClass(Host.class));
+        assertNull(LessIOGeneratedClasses.getOuterClass(LessIOGeneratedClassesTest.class));
+    }
+
+    @Test
+    public void testAnonymousClassHasEnclosingClass()
+    {
+        final Class<?> anonymous = Host.anonymous().getClass();
+        assertFalse(LessIOGeneratedClasses.isGenerated(anonymous));
+        assertSame(Host.class, LessIOGeneratedClasses.getOuterClass(anonymous));
+    }
+
+    @Test
+    public void testLambdaHostIsContainingClass()
+    {
+        final Class<?> lambda = Host.lambda().getClass();
+        assertTrue(LessIOGeneratedClasses.isGenerated(lambda));
+
+        // Not the nest host, which is the outermost class.
+        assertSame(Host.class, LessIOGeneratedClasses.getOuterClass(lambda));
+    }
+
+    @Test
+    public void testLambdaHasCapabilitiesOfHost()
+    {
+        final Class<?> lambda = Host.lambda().getClass();
+        final LessIOCapabilities capabilities = new LessIOCapabilities(
+            new LessIOClassCache(Collections.<Class<?>>emptyList()),
+            new LessIOClassCache(Collections.<Class<?>>singleton(Host.class)),
+            false);
+
+        assertEquals(capabilities.of(Host.class), capabilities.of(lambda));
+    }
+
+    @Test
+    public void testHiddenClassHostIsNestHost() throws Exception
+    {
+        final Class<?> hidden = defineHiddenNestmate(Template.class);
+        assertTrue(LessIOGeneratedClasses.isGenerated(hidden));
+        assertSame(LessIOGeneratedClassesTest.class, LessIOGeneratedClasses.getOuterClass(hidden));
+    }
+
+        @Test
+    public void testProxyClass()
+    {
+        final Class<?> proxy = Proxy.newProxyInstance(Seed.class.getClassLoader(), new Class<?>[] { Seed.class }, (instance, method, args) -> null).getClass();
+        assertTrue(LessIOGeneratedClasses.isGenerated(proxy));
+        assertNull(LessIOGeneratedClasses.getOuterClass(proxy));
+
+        // Classified through its interfaces.
+        assertTrue(new LessIOClassCache(Collections.<Class<?>>singleton(Seed.class)).matches(proxy));
+        assertFalse(new LessIOClassCache(Collections.<Class<?>>singleton(Host.class)).matches(proxy));
+    }
+
+    /**
+     * Hidden classes need JDK 15, this code still compiles for JDK 11.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Class<?> defineHiddenNestmate(final Class<?> template) throws Exception
+    {
+        final Class<? extends Enum> classOption;
+        final Method defineHiddenClass;
+        try {
+            classOption = (Class<? extends Enum>) Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            defineHiddenClass = MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class, Array.newInstance(classOption, 0).getClass());
+        }
+        catch (final ClassNotFoundException | NoSuchMethodException e) {
+            assumeTrue(false);
+            return null;
+        }
+
+        final byte[] bytes;
+        try (InputStream in = template.getResourceAsStream(template.getName().substring(template.getName().lastIndexOf('.') + 1) + ".class")) {
+            bytes = in.readAllBytes();
+        }
+
+        final Object options = Array.newInstance(classOption, 1);
+        Array.set(options, 0, Enum.valueOf(classOption, "NESTMATE"));
+        final MethodHandles.Lookup lookup = (MethodHandles.Lookup) defineHiddenClass.invoke(MethodHandles.lookup(), bytes, false, options);
+        return lookup.lookupClass();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LessIOLocalHostsTest
+{
+    private static final String HOST_NAME = "lessio-test-host";
+
+    @Test
+    public void testHostNameIsKnownDuringSlowLookup() throws Exception
+    {
+        final CountDownLatch lookupStarted = new CountDownLatch(1);
+        final CountDownLatch lookupDone = new CountDownLatch(1);
+        final LessIOLocalHosts localHosts = LessIOLocalHosts.resolve(HOST_NAME, () -> {
+            lookupStarted.countDown();
+            try {
+                lookupDone.await();
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return InetAddress.getByAddress(HOST_NAME, new byte[] { 10, 1, 2, 3 });
+        });
+
+        try {
+            assertTrue(lookupStarted.await(10, TimeUnit.SECONDS));
+            assertTrue(localHosts.contains(HOST_NAME));
+            assertFalse(localHosts.contains("10.1.2.3"));
+        }
+        finally {
+            lookupDone.countDown();
+        }
+    }
+
+    @Test
+    public void testHostNameIsKnownAfterFailedLookup() throws Exception
+    {
+        final CountDownLatch lookupFailed = new CountDownLatch(1);
+        final LessIOLocalHosts localHosts = LessIOLocalHosts.resolve(HOST_NAME, () -> {
+            lookupFailed.countDown();
+            throw new UnknownHostException(HOST_NAME);
+        });
+
+        assertTrue(lookupFailed.await(10, TimeUnit.SECONDS));
+        assertTrue(localHosts.contains(HOST_NAME));
+    }
+
+    @Test
+    public void testLookupAddsAddress() throws Exception
+    {
+        final LessIOLocalHosts localHosts = LessIOLocalHosts.resolve(null, () -> InetAddress.getByAddress(HOST_NAME, new byte[] { 10, 1, 2, 3 }));
+
+        // The lookup runs in the background.
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!localHosts.contains("10.1.2.3") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(localHosts.contains("10.1.2.3"));
+        assertTrue(localHosts.contains(HOST_NAME));
+    }
+
+    @Test
+    public void testKernelHostNameIsKnown() throws Exception
+    {
+        final Path kernelHostName = Paths.get("/proc/sys/kernel/hostname");
+        assumeTrue(Files.isReadable(kernelHostName));
+
+        final String hostName = new String(Files.readAllBytes(kernelHostName), UTF_8).trim();
+        assertTrue(LessIOLocalHosts.resolve().contains(hostName));
+    }
+}
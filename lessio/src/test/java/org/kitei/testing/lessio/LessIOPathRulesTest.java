@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+public class LessIOPathRulesTest
+{
+    private static final String CMD = "/usr/bin/whoami";
+
+    @AllowLocalFileAccess(paths = {"/data/[abc", "/data/valid/*"})
+    private static class InvalidGlob
+    {
+        private void read(final LessIOEngine engine, final String fileName)
+        {
+            engine.checkRead(fileName, LessIOStackSource.currentThread());
+        }
+
+        private void exec(final LessIOEngine engine)
+        {
+            engine.checkExec(CMD, LessIOStackSource.currentThread());
+        }
+    }
+
+    @Test
+    public void testInvalidGlobDoesNotFailTheProfile()
+    {
+        final LessIOPathRules rules = LessIOClassProfile.forClass(InvalidGlob.class).getLocalFileAccessRules();
+        assertTrue(rules.matches(Paths.get("/data/valid/file"), false));
+    }
+
+    @Test
+    public void testInvalidGlobIsReportedByFileChecks()
+    {
+        final LessIOPathRules rules = LessIOClassProfile.forClass(InvalidGlob.class).getLocalFileAccessRules();
+        try {
+            rules.matches(Paths.get("/etc/passwd"), false);
+            fail();
+        }
+        catch (final IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("/data/[abc"));
+        }
+
+        try {
+            new InvalidGlob().read(LessIOEngine.create(), "/etc/passwd");
+            fail();
+        }
+        catch (final LessIOException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void testInvalidGlobIsNotSeenByOtherChecks()
+    {
+        try {
+            new InvalidGlob().exec(LessIOEngine.create());
+            fail();
+        }
+        catch (final LessIOException e) {
+            assertFalse(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+}
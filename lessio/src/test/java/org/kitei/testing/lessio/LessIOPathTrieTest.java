@@ -0,0 +1,219 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LessIOPathTrieTest
+{
+    private LessIOPathTrie trie;
+
+    @Before
+    public void setUp()
+    {
+        assumeTrue(LessIOPathTrie.supportsGlobs());
+        trie = new LessIOPathTrie();
+    }
+
+    private boolean matches(final String path)
+    {
+        return trie.matches(Paths.get(path));
+    }
+
+    @Test
+    public void testPath()
+    {
+        trie.addPath(Paths.get("/a/b"));
+
+        assertTrue(matches("/a/b"));
+        assertFalse(matches("/a"));
+        assertFalse(matches("/a/b/c"));
+        assertFalse(matches("/a/bc"));
+    }
+
+    @Test
+    public void testPathAndDescendants()
+    {
+        trie.addPathAndDescendants(Paths.get("/lib/a.jar"));
+
+        assertTrue(matches("/lib/a.jar"));
+        assertTrue(matches("/lib/a.jar/x/y"));
+        assertFalse(matches("/lib/a.jar.lock"));
+        assertFalse(matches("/lib"));
+    }
+
+    @Test
+    public void testSingleStarStaysInSegment()
+    {
+        trie.addGlob("/a/*.txt");
+
+        assertTrue(matches("/a/x.txt"));
+        assertFalse(matches("/a/b/x.txt"));
+        assertFalse(matches("/b/x.txt"));
+    }
+
+    @Test
+    public void testDoubleStarCrossesSegments()
+    {
+        trie.addGlob("/a/**.txt");
+
+        assertTrue(matches("/a/x.txt"));
+        assertTrue(matches("/a/b/c/x.txt"));
+        assertFalse(matches("/a/b/c/x.json"));
+    }
+
+    @Test
+    public void testDescendantsGlob()
+    {
+        trie.addGlob("/a/b/**");
+
+        assertTrue(matches("/a/b/c"));
+        assertTrue(matches("/a/b/c/d"));
+        assertFalse(matches("/a/bc"));
+    }
+
+    @Test
+    public void testNegatedClass()
+    {
+        trie.addGlob("/a/[!b-d]x");
+
+        assertTrue(matches("/a/ax"));
+        assertTrue(matches("/a/ex"));
+        assertFalse(matches("/a/cx"));
+    }
+
+    @Test
+    public void testGroup()
+    {
+        trie.addGlob("/a/{b,cd}/e");
+
+        assertTrue(matches("/a/b/e"));
+        assertTrue(matches("/a/cd/e"));
+        assertFalse(matches("/a/c/e"));
+        assertFalse(matches("/a/{b,cd}/e"));
+    }
+
+    @Test
+    public void testEscapes()
+    {
+        trie.addGlob("/a/b\\*c");
+        trie.addGlob("/p/a.b+c(d)");
+
+        assertTrue(matches("/a/b*c"));
+        assertFalse(matches("/a/bxc"));
+        assertTrue(matches("/p/a.b+c(d)"));
+        assertFalse(matches("/p/aXb+c(d)"));
+    }
+
+    @Test
+    public void testNestedPrefixes()
+    {
+        trie.addGlob("/a/*.json");
+        trie.addGlob("/a/b/*.txt");
+        trie.addGlob("/a/b/c/**");
+
+        assertTrue(matches("/a/x.json"));
+        assertTrue(matches("/a/b/x.txt"));
+        assertTrue(matches("/a/b/c/d/e"));
+        assertFalse(matches("/a/b/x.json"));
+        assertFalse(matches("/a/x.txt"));
+        assertFalse(matches("/a/b/c"));
+    }
+
+    @Test
+    public void testGlobWithoutLiteralPrefix()
+    {
+        trie.addGlob("**/*.json");
+
+        assertTrue(matches("/a/b/x.json"));
+        assertFalse(matches("x.json"));
+    }
+
+    @Test
+    public void testCombinedGlobsWithoutLiteralPrefix()
+    {
+        trie.addGlob("**/fixtures/*");
+        trie.addGlob("*.txt");
+        trie.addGlob("**/{a,b}/*.json");
+
+        assertTrue(matches("/x/fixtures/y"));
+        assertTrue(matches("x.txt"));
+        assertTrue(matches("/x/b/y.json"));
+        assertFalse(matches("/x/fixtures/y/z"));
+        assertFalse(matches("/x.txt"));
+        assertFalse(matches("/x/c/y.json"));
+    }
+
+    @Test
+    public void testCombinedGlobsKeepLiteralCommasAndBraces()
+    {
+        trie.addGlob("/a/x,y*");
+        trie.addGlob("/a/}z*");
+        trie.addGlob("/a/[,}]w");
+        trie.addGlob("/a/\\{v\\}");
+        trie.addGlob("/a/{u,\\,}");
+
+        assertTrue(matches("/a/x,y1"));
+        assertTrue(matches("/a/}z1"));
+        assertTrue(matches("/a/,w"));
+        assertTrue(matches("/a/}w"));
+        assertTrue(matches("/a/{v}"));
+        assertTrue(matches("/a/u"));
+        assertTrue(matches("/a/,"));
+        assertFalse(matches("/a/x"));
+        assertFalse(matches("/a/y1"));
+        assertFalse(matches("/a/z1"));
+        assertFalse(matches("/a/xw"));
+    }
+
+    @Test
+    public void testSameAsPathMatcher()
+    {
+        final String[] globs = { "/tmp/junit*", "**/*.json", "/a/{b,c}/d", "/a/b/**", "/a/[a-]x", "/x/?y/*.{txt,md}", "/h/[^a]z", "/a/b\\*c" };
+        final String[] paths = { "/tmp/junit123", "/tmp/junit1/x", "/a/b/c.json", "/a/b/d", "/a/c/d", "/a/e/d", "/a/b", "/a/b/c/d",
+                                 "/a/-x", "/a/ax", "/x/zy/f.md", "/x/zy/f.doc", "/h/^z", "/h/bz", "/a/b*c" };
+
+        for (final String glob : globs) {
+            final LessIOPathTrie globTrie = new LessIOPathTrie();
+            globTrie.addGlob(glob);
+            final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+
+            for (final String path : paths) {
+                assertEquals(glob + " " + path, matcher.matches(Paths.get(path)), globTrie.matches(Paths.get(path)));
+            }
+        }
+
+        // All globs in one trie, the globs on a node are combined.
+        for (final String glob : globs) {
+            trie.addGlob(glob);
+        }
+        for (final String path : paths) {
+            boolean expected = false;
+            for (final String glob : globs) {
+                expected |= FileSystems.getDefault().getPathMatcher("glob:" + glob).matches(Paths.get(path));
+            }
+            assertEquals(path, expected, matches(path));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LessIOPortsTest
+{
+    @AllowNetworkListen(ports = {8080, 0, 80, 443})
+    private static class Listen
+    {
+    }
+
+    @AllowNetworkListen(ports = {})
+    private static class NoPorts
+    {
+    }
+
+    @Test
+    public void testPorts()
+    {
+        final LessIOPorts ports = LessIOPorts.compile(Listen.class.getAnnotation(AllowNetworkListen.class));
+
+        assertTrue(ports.matches(80, false));
+        assertTrue(ports.matches(443, false));
+        assertTrue(ports.matches(8080, false));
+        assertFalse(ports.matches(81, false));
+        assertFalse(ports.matches(8081, false));
+    }
+
+    @Test
+    public void testEphemeralPorts()
+    {
+        final LessIOPorts ports = LessIOPorts.compile(Listen.class.getAnnotation(AllowNetworkListen.class));
+        final LessIOPorts noPorts = LessIOPorts.compile(NoPorts.class.getAnnotation(AllowNetworkListen.class));
+
+        assertTrue(ports.matches(50000, true));
+        assertFalse(ports.matches(50000, false));
+        assertFalse(noPorts.matches(50000, true));
+        assertFalse(noPorts.matches(0, true));
+    }
+
+    @Test
+    public void testAnyPort()
+    {
+        final LessIOPorts ports = new LessIOPorts.Builder().addAnyPort().build();
+
+        assertTrue(ports.matches(1, false));
+        assertTrue(ports.matches(50000, true));
+    }
+
+    @Test
+    public void testManyPorts()
+    {
+        final LessIOPorts.Builder builder = new LessIOPorts.Builder();
+        for (int port = 2000; port > 1000; port -= 2) {
+            builder.add(port);
+        }
+        final LessIOPorts ports = builder.build();
+
+        for (int port = 1002; port <= 2000; port += 2) {
+            assertTrue(ports.matches(port, false));
+            assertFalse(ports.matches(port + 1, false));
+        }
+        assertFalse(ports.matches(1000, false));
+    }
+
+    @Test
+    public void testBuilderCanBeReused()
+    {
+        final LessIOPorts.Builder builder = new LessIOPorts.Builder().add(80);
+        final LessIOPorts first = builder.build();
+        final LessIOPorts second = builder.add(81).build();
+
+        assertFalse(first.matches(81, false));
+        assertTrue(second.matches(80, false));
+        assertTrue(second.matches(81, false));
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LessIOTestClassDecisionsTest
+{
+    private static final String CMD = "/usr/bin/whoami";
+
+    @AllowExternalProcess
+    private static class ExecAllowed
+    {
+    }
+
+    private static class ExecDenied
+    {
+    }
+
+    @AllowExternalProcess
+    private static class AllowedOperation
+    {
+        private void run(final LessIOEngine engine)
+        {
+            engine.checkExec(CMD, LessIOStackSource.currentThread());
+        }
+    }
+
+    // Defines UnloadableTestClass itself, so that the class can be unloaded together with the loader.
+    private static final class IsolatingClassLoader extends ClassLoader
+    {
+        private IsolatingClassLoader()
+        {
+            super(LessIOTestClassDecisionsTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException
+        {
+            if (!name.equals(UnloadableTestClass.class.getName())) {
+                return super.loadClass(name, resolve);
+            }
+
+            synchronized (getClassLoadingLock(name)) {
+                final Class<?> loaded = findLoadedClass(name);
+                if (loaded != null) {
+                    return loaded;
+                }
+
+                try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                    final byte[] bytes = in.readAllBytes();
+                    return defineClass(name, bytes, 0, bytes.length);
+                }
+                catch (final IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+        }
+    }
+
+    private LessIOEngine engine;
+    private LessIODecisionCache<?> decisions;
+
+    @Before
+    public void setUp()
+    {
+        engine = LessIOEngine.create();
+        decisions = engine.getTestClassDecisionCache();
+    }
+
+    @After
+    public void tearDown()
+    {
+        LessIOTestThreads.exit();
+    }
+
+    @Test
+    public void testRepeatedOperationHitsCache()
+    {
+        LessIOTestThreads.enter(ExecAllowed.class);
+        final long misses = decisions.getMissCount();
+
+        exec();
+        exec();
+        exec();
+
+        assertEquals(misses + 1, decisions.getMissCount());
+        assertEquals(2, decisions.getHitCount());
+        assertEquals(1, decisions.size());
+    }
+
+    @Test
+    public void testClasspathChangeInvalidatesDecisions()
+    {
+        LessIOTestThreads.enter(ExecAllowed.class);
+        final long misses = decisions.getMissCount();
+
+        exec();
+        exec();
+
+        final String classpath = System.getProperty("java.class.path");
+        try {
+            System.setProperty("java.class.path", classpath + File.pathSeparator + "lessio-test.jar");
+            engine.refreshClasspath();
+
+            exec();
+        }
+        finally {
+            System.setProperty("java.class.path", classpath);
+        }
+
+        assertEquals(misses + 2, decisions.getMissCount());
+        assertEquals(1, decisions.getHitCount());
+        assertEquals(1, decisions.getInvalidationCount());
+    }
+
+    @Test
+    public void testDeniedOperationWalksStack()
+    {
+        LessIOTestThreads.enter(ExecDenied.class);
+
+        // The cached denial of the test class does not deny the operation, an annotated class on the stack allows it.
+        new AllowedOperation().run(engine);
+        new AllowedOperation().run(engine);
+        assertEquals(1, decisions.getHitCount());
+    }
+
+    @Test
+    public void testDecisionsDoNotKeepTestClassLoaded() throws Exception
+    {
+        final WeakReference<ClassLoader> loader = cacheDecisionInNewClassLoader();
+
+        for (int i = 0; i < 100 && loader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(loader.get());
+    }
+
+    private WeakReference<ClassLoader> cacheDecisionInNewClassLoader() throws Exception
+    {
+        final ClassLoader loader = new IsolatingClassLoader();
+        final Class<?> testClass = loader.loadClass(UnloadableTestClass.class.getName());
+
+        LessIOTestThreads.enter(testClass);
+        try {
+            exec();
+        }
+        finally {
+            LessIOTestThreads.exit();
+        }
+        assertEquals(1, decisions.size());
+
+        return new WeakReference<>(loader);
+    }
+
+    @Test(expected = LessIOException.class)
+    public void testDeniedOperation()
+    {
+        LessIOTestThreads.enter(ExecDenied.class);
+        exec();
+    }
+
+    private void exec()
+    {
+        engine.checkExec(CMD, LessIOStackSource.currentThread());
+    }
+}
+
+// Top level, a nested class could not be loaded apart from its enclosing class.
+@AllowExternalProcess
+final class UnloadableTestClass
+{
+}
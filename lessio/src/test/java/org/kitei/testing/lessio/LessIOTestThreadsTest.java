@@ -0,0 +1,55 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The tests of this module run without a listener, so only the scopes entered here mark a thread.
+ */
+public class LessIOTestThreadsTest
+{
+    private static final String CMD = "/usr/bin/whoami";
+
+    @AllowExternalProcess
+    private static class ExecAllowed
+    {
+    }
+
+    private LessIOEngine engine;
+
+    @Before
+    public void setUp()
+    {
+        engine = LessIOEngine.create();
+    }
+
+    @Test(expected = LessIOException.class)
+    public void testUnmarkedCheckAfterTestScopeIsChecked()
+    {
+        // Like a JUnit 5 class with the extension, followed by a JUnit 4 test on the same thread.
+        LessIOTestThreads.enter(ExecAllowed.class);
+        exec();
+        LessIOTestThreads.exit();
+
+        // The test runner class of this test is on the stack.
+        exec();
+    }
+
+    private void exec()
+    {
+        engine.checkExec(CMD, LessIOStackSource.currentThread());
+    }
+}
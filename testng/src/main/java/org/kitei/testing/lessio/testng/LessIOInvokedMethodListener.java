@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.testng;
+
+import org.kitei.testing.lessio.LessIOTestThreads;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ITestResult;
+
+/**
+ * Binds the test class to the thread that runs a test or configuration method, see {@link LessIOTestThreads}.
+ * The Allow* annotations of the class of the test instance are resolved once and allow an operation without
+ * walking the stack, also when methods run in parallel. Register it with <code>@Listeners</code>, in
+ * <code>testng.xml</code> or with Surefire:
+ *
+ * <pre>
+ * &lt;properties&gt;
+ *   &lt;property&gt;
+ *     &lt;name&gt;listener&lt;/name&gt;
+ *     &lt;value&gt;org.kitei.testing.lessio.testng.LessIOInvokedMethodListener&lt;/value&gt;
+ *   &lt;/property&gt;
+ * &lt;/properties&gt;
+ * </pre>
+ *
+ * Unlike the JUnit listener, it does not skip checks on other threads. TestNG runs data providers,
+ * factories and the constructors of test classes outside of any method invocation, so this listener
+ * does not see every thread that runs test code.
+ */
+public class LessIOInvokedMethodListener implements IInvokedMethodListener
+{
+    @Override
+    public void beforeInvocation(final IInvokedMethod method, final ITestResult testResult)
+    {
+        LessIOTestThreads.enter(getTestClass(method, testResult));
+    }
+
+    @Override
+    public void afterInvocation(final IInvokedMethod method, final ITestResult testResult)
+    {
+        LessIOTestThreads.exit();
+    }
+
+    /**
+     * Static configuration methods have no instance.
+     */
+    private static Class<?> getTestClass(final IInvokedMethod method, final ITestResult testResult)
+    {
+        final Object instance = testResult.getInstance();
+        return instance != null ? instance.getClass() : method.getTestMethod().getRealClass();
+    }
+}
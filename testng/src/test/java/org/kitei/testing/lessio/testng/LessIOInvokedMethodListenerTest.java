@@ -0,0 +1,187 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kitei.testing.lessio.testng;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.kitei.testing.lessio.AllowExternalProcess;
+import org.kitei.testing.lessio.LessIOException;
+import org.kitei.testing.lessio.LessIOSecurityManager;
+import org.testng.TestListenerAdapter;
+import org.testng.TestNG;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Runs the nested test classes with their own {@link TestNG} and the {@link LessIOInvokedMethodListener}.
+ */
+public class LessIOInvokedMethodListenerTest
+{
+    private static final LessIOSecurityManager SM = new LessIOSecurityManager();
+
+    private static final String CMD = "/usr/bin/whoami";
+
+    // The stack only has this class, so only the bound class of the test instance can allow the operation.
+    // Abstract, TestNG also runs the nested classes of a test class and this one has no test class to bind.
+    public abstract static class ExecBase
+    {
+        @Test(invocationCount = 10)
+        public void testExec()
+        {
+            SM.checkExec(CMD);
+        }
+    }
+
+    @AllowExternalProcess
+    public static class ExecAllowed extends ExecBase
+    {
+    }
+
+    public static class ExecDenied extends ExecBase
+    {
+        @Override
+        @Test(invocationCount = 10)
+        public void testExec()
+        {
+            try {
+                super.testExec();
+                fail("exec was allowed");
+            }
+            catch (final LessIOException e) {
+                // expected
+            }
+        }
+    }
+
+    // Static configuration methods have no test instance.
+    @AllowExternalProcess
+    public static class StaticBeforeClassAllowed
+    {
+        @BeforeClass
+        public static void setUpClass()
+        {
+            SM.checkExec(CMD);
+        }
+
+        @Test
+        public void testNothing()
+        {
+        }
+    }
+
+    // Not bound to the instance, the listener binds the declaring class of a static configuration method.
+    public static class StaticBeforeClassDenied
+    {
+        @BeforeClass
+        public static void setUpClass()
+        {
+            try {
+                SM.checkExec(CMD);
+                fail("exec was allowed");
+            }
+            catch (final LessIOException e) {
+                // expected
+            }
+        }
+
+        @Test
+        public void testNothing()
+        {
+        }
+    }
+
+    // TestNG calls data providers outside of any invocation that the listener sees.
+    public static class DataProviderDenied
+    {
+        @DataProvider
+        public static Object[][] execDenied()
+        {
+            try {
+                SM.checkExec(CMD);
+                return new Object[][] {{false}};
+            }
+            catch (final LessIOException e) {
+                return new Object[][] {{true}};
+            }
+        }
+
+        @Test(dataProvider = "execDenied")
+        public void testDataProvider(final boolean denied)
+        {
+            assertTrue(denied, "exec was allowed");
+        }
+    }
+
+    @Test
+    public void testAllowed()
+    {
+        assertPassed(run(false, ExecAllowed.class), 10);
+    }
+
+    @Test
+    public void testDenied()
+    {
+        assertPassed(run(false, ExecDenied.class), 10);
+    }
+
+    @Test
+    public void testStaticBeforeClass()
+    {
+        assertPassed(run(false, StaticBeforeClassAllowed.class, StaticBeforeClassDenied.class), 2);
+    }
+
+    @Test
+    public void testParallelMethods()
+    {
+        // Each thread must see the test class of the method it runs right now.
+        assertPassed(run(true, ExecAllowed.class, ExecDenied.class, StaticBeforeClassAllowed.class, StaticBeforeClassDenied.class), 22);
+    }
+
+    @Test
+    public void testDataProvider() throws Exception
+    {
+        // The thread of this test is marked, run on one that is not.
+        final TestListenerAdapter[] results = new TestListenerAdapter[1];
+        final Thread thread = new Thread(null, () -> results[0] = run(false, DataProviderDenied.class), "data-provider", 0, false);
+        thread.start();
+        thread.join();
+        assertPassed(results[0], 1);
+    }
+
+    private static TestListenerAdapter run(final boolean parallel, final Class<?>... testClasses)
+    {
+        final TestListenerAdapter results = new TestListenerAdapter();
+        final TestNG testng = new TestNG();
+        testng.setUseDefaultListeners(false);
+        testng.setTestClasses(testClasses);
+        testng.addListener(new LessIOInvokedMethodListener());
+        testng.addListener(results);
+        if (parallel) {
+            testng.setParallel("methods");
+            testng.setThreadCount(4);
+        }
+        testng.run();
+        return results;
+    }
+
+    private static void assertPassed(final TestListenerAdapter results, final int count)
+    {
+        assertTrue(results.getFailedTests().isEmpty(), "failed: " + results.getFailedTests());
+        assertTrue(results.getConfigurationFailures().isEmpty(), "configuration failed: " + results.getConfigurationFailures());
+        assertEquals(results.getPassedTests().size(), count);
+    }
+}